@@ -0,0 +1,65 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.stats.Correlation;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import com.teamtreehouse.dbanalysis.stats.RunningStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ the numbers behind displayStats() and corrCoef(), worked out from a
+ snapshot already in memory, plus one change to the running stats
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalysisBenchmark {
+    @Param({"200", "10000", "1000000"})
+    private int rows;
+
+    private CountrySnapshot snapshot;
+    private RunningStats running;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snapshot = BenchmarkData.snapshot(rows);
+        running = RunningStats.of(snapshot);
+    }
+
+    @Benchmark
+    public CountryStats displayStats() {
+        return CountryStats.of(snapshot);
+    }
+
+    @Benchmark
+    public double corrCoef() {
+        Correlation correlation = new Correlation();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.hasInternetUsers(i) && snapshot.hasAdultLiteracyRate(i)) {
+                correlation.add(snapshot.getInternetUsers(i), snapshot.getAdultLiteracyRate(i));
+            }
+        }
+        return correlation.coefficient();
+    }
+
+    @Benchmark
+    public CountryStats runningStatsAfterUpdate() {
+        int row = next;
+        next = (next + 1) % snapshot.size();
+        running.put(snapshot.getCode(row), snapshot.getName(row),
+                (snapshot.getInternetUsers(row) + 1) % 100, true,
+                snapshot.getAdultLiteracyRate(row), snapshot.hasAdultLiteracyRate(row));
+        return running.stats();
+    }
+}
@@ -0,0 +1,155 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ the same generated countries for every benchmark, from a fixed seed.
+
+ the real code column holds three characters, which runs out long
+ before a million rows, so the in-memory database used here widens
+ code and name after Hibernate creates the schema. everything else
+ is the mapping and settings from hibernate.cfg.xml.
+ */
+class BenchmarkData {
+    static final long SEED = 42;
+    private static final int CODE_WIDTH = 8;
+    private static final int NAME_WIDTH = 40;
+
+    private static final String INSERT =
+            "INSERT INTO Country (code, name, internetUsers, adultLiteracyRate, version) VALUES (?, ?, ?, ?, 0)";
+
+    /*
+     takes a row number
+     returns a code that sorts in row order
+     */
+    static String code(int row) {
+        String digits = Integer.toString(row, 36).toUpperCase();
+        return "0000".substring(Math.min(4, digits.length())) + digits;
+    }
+
+    static String name(int row) {
+        return "Country " + code(row);
+    }
+
+    /*
+     roughly like the real table: most countries have internet users,
+     about a quarter have an adult literacy rate
+     */
+    static CountrySnapshot snapshot(int rows) {
+        Random random = new Random(SEED);
+        CountrySnapshot.Builder builder = new CountrySnapshot.Builder(rows);
+        for (int i = 0; i < rows; i++) {
+            double internet = random.nextDouble() * 100;
+            double literacy = 30 + random.nextDouble() * 70;
+            builder.add(code(i), name(i),
+                    random.nextInt(20) == 0 ? null : internet,
+                    random.nextInt(4) == 0 ? literacy : null);
+        }
+        return builder.build();
+    }
+
+    /*
+     takes how many indicators, countries and years
+     returns series where each year is recorded seven times out of ten,
+     so every pair of indicators has its own set of observations
+     */
+    static List<IndicatorSeries> series(int indicators, int countries, int years) {
+        Random random = new Random(SEED);
+        List<IndicatorSeries> series = new ArrayList<>(indicators);
+        for (int i = 0; i < indicators; i++) {
+            IndicatorSeries.Builder builder = new IndicatorSeries.Builder("BENCH." + i, 1960, 1960 + years - 1);
+            for (int c = 0; c < countries; c++) {
+                for (int year = 1960; year < 1960 + years; year++) {
+                    if (random.nextInt(10) < 7) builder.add(code(c), year, random.nextDouble() * 1000);
+                }
+            }
+            series.add(builder.build());
+        }
+        return series;
+    }
+
+    /*
+     returns a session factory over a fresh in-memory database holding the rows
+     */
+    static SessionFactory database(CountrySnapshot snapshot) {
+        StandardServiceRegistryBuilder registry = new StandardServiceRegistryBuilder().configure()
+                .applySetting("hibernate.connection.url",
+                        "jdbc:h2:mem:bench" + snapshot.size() + ";DB_CLOSE_DELAY=-1")
+                .applySetting("hibernate.hbm2ddl.auto", "create")
+                .applySetting("hibernate.show_sql", "false")
+                .applySetting("hibernate.cache.use_second_level_cache", "false");
+        SessionFactory sessionFactory = new MetadataSources(registry.build()).buildMetadata().buildSessionFactory();
+
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction transaction = session.beginTransaction();
+        Connection connection = ((SessionImplementor) session).connection();
+        try (Statement statement = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            statement.execute("ALTER TABLE Country ALTER COLUMN code VARCHAR(" + CODE_WIDTH + ")");
+            statement.execute("ALTER TABLE Country ALTER COLUMN name VARCHAR(" + NAME_WIDTH + ")");
+            for (int i = 0; i < snapshot.size(); i++) {
+                insert.setString(1, snapshot.getCode(i));
+                insert.setString(2, snapshot.getName(i));
+                insert.setDouble(3, snapshot.hasInternetUsers(i) ? snapshot.getInternetUsers(i) : 0.00);
+                insert.setDouble(4, snapshot.hasAdultLiteracyRate(i) ? snapshot.getAdultLiteracyRate(i) : 0.00);
+                insert.addBatch();
+                if (i % 1000 == 999) insert.executeBatch();
+            }
+            insert.executeBatch();
+            transaction.commit();
+        } catch (SQLException e) {
+            transaction.rollback();
+            session.close();
+            sessionFactory.close();
+            throw new HibernateException("Could not load benchmark rows: " + e.getMessage(), e);
+        }
+        session.close();
+        return sessionFactory;
+    }
+
+    /*
+     a sink for rendered output, so only the rendering is measured
+     */
+    static class NullWriter extends Writer {
+        private long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        long getChars() {
+            return chars;
+        }
+    }
+}
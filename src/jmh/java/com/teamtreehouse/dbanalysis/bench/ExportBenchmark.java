@@ -0,0 +1,72 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.TableExport;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.render.TableRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ the write half of an export: rendering rows into a file through the
+ channel writer TableExport opens, with and without gzip, so what is
+ measured is the renderer, the encoder and the disk, not the database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark {
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    @Param({"csv", "jsonl"})
+    private String format;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private CountrySnapshot snapshot;
+    private Path directory;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        snapshot = BenchmarkData.snapshot(rows);
+        directory = Files.createTempDirectory("export-bench");
+        file = directory.resolve("countries." + format + (gzip ? ".gz" : ""));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        try (Writer out = TableExport.open(file)) {
+            TableRenderer renderer = TableRenderer.forFormat(format, out);
+            renderer.header();
+            for (int i = 0; i < snapshot.size(); i++) {
+                renderer.row(snapshot.getCode(i), snapshot.getName(i),
+                        snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                        snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
+            }
+            renderer.finish();
+        }
+        return Files.size(file);
+    }
+}
@@ -0,0 +1,54 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+import com.teamtreehouse.dbanalysis.stats.CorrelationMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ the correlation matrix over generated series already in memory, on
+ one thread and on a pool with a thread per core, for 200 countries
+ over 57 years
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MatrixBenchmark {
+    @Param({"10", "40"})
+    private int indicators;
+
+    @Param({"1", "0"})
+    private int threads;
+
+    private List<IndicatorSeries> series;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = BenchmarkData.series(indicators, 200, 57);
+        // 0 is a thread per core
+        pool = new ForkJoinPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public CorrelationMatrix correlationMatrix() {
+        return CorrelationMatrix.of(series, pool);
+    }
+}
@@ -0,0 +1,58 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.CountryPager;
+import com.teamtreehouse.dbanalysis.data.CountryQuery;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ reading the whole table: into a snapshot with the versions, the way
+ Application.fetchSnapshot() loads it through CountryQuery, and a page
+ at a time through CountryPager, the way the load driver does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryBenchmark {
+    @Param({"200", "10000", "1000000"})
+    private int rows;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkData.database(BenchmarkData.snapshot(rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public CountrySnapshot fetchSnapshot() {
+        return new CountryQuery(sessionFactory).snapshot(new HashMap<>());
+    }
+
+    @Benchmark
+    public long pageThroughTable(Blackhole blackhole) {
+        return new CountryPager(sessionFactory, 500).forEachRow((code, name, internetUsers, literacyRate) -> {
+            blackhole.consume(code);
+            blackhole.consume(internetUsers);
+        });
+    }
+}
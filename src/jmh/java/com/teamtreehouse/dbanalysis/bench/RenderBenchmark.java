@@ -0,0 +1,51 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.render.TableRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ displayTable() rendering in each output format, into a writer that
+ throws the text away so the terminal is not what gets measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+    @Param({"200", "10000", "1000000"})
+    private int rows;
+
+    @Param({"text", "csv", "json", "jsonl"})
+    private String format;
+
+    private CountrySnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snapshot = BenchmarkData.snapshot(rows);
+    }
+
+    @Benchmark
+    public long displayTable() {
+        BenchmarkData.NullWriter out = new BenchmarkData.NullWriter();
+        TableRenderer renderer = TableRenderer.forFormat(format, out);
+        renderer.header();
+        for (int i = 0; i < snapshot.size(); i++) {
+            renderer.row(snapshot.getCode(i), snapshot.getName(i),
+                    snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                    snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
+        }
+        renderer.finish();
+        return out.getChars();
+    }
+}
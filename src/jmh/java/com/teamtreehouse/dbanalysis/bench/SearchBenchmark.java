@@ -0,0 +1,53 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.NameSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ completing a name and finding a misspelt one among the names
+ BenchmarkData makes, which all share their first eight letters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    @Param({"200", "10000"})
+    private int rows;
+
+    private NameSearch names;
+    private String prefix;
+    private String misspelt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = new NameSearch();
+        for (int i = 0; i < rows; i++) {
+            names.put(BenchmarkData.code(i), BenchmarkData.name(i));
+        }
+        String name = BenchmarkData.name(rows / 2);
+        prefix = name.substring(0, name.length() - 1);
+        // two letters swapped
+        misspelt = "Cuontry " + BenchmarkData.code(rows / 2);
+    }
+
+    @Benchmark
+    public List<NameSearch.Match> startingWith() {
+        return names.startingWith(prefix, 10);
+    }
+
+    @Benchmark
+    public List<NameSearch.Match> closeTo() {
+        return names.closeTo(misspelt, 2, 10);
+    }
+}
@@ -0,0 +1,57 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.SnapshotFile;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ a snapshot file: mapping it, and the stats screen over the mapped
+ columns, to set against AnalysisBenchmark.displayStats on the heap
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotBenchmark {
+    @Param({"200", "10000", "1000000"})
+    private int rows;
+
+    private Path file;
+    private CountrySnapshot mapped;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("worldbank", ".snapshot");
+        SnapshotFile.write(BenchmarkData.snapshot(rows), file);
+        mapped = SnapshotFile.map(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CountrySnapshot map() throws IOException {
+        return SnapshotFile.map(file);
+    }
+
+    @Benchmark
+    public CountryStats mappedStats() {
+        return CountryStats.of(mapped);
+    }
+}
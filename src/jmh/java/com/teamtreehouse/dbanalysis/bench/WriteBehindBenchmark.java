@@ -0,0 +1,92 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.CountryWriter;
+import com.teamtreehouse.dbanalysis.data.WriteBehind;
+import com.teamtreehouse.dbanalysis.model.Country;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ a burst of updates committed one at a time through CountryWriter,
+ against the same burst queued on a WriteBehind and flushed, so
+ the queued figure includes waiting for the group commits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteBehindBenchmark {
+    private static final int BURST = 1000;
+
+    @Param({"200", "10000"})
+    private int rows;
+
+    private SessionFactory sessionFactory;
+    private CountryWriter writer;
+    private WriteBehind queue;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkData.database(BenchmarkData.snapshot(rows));
+        writer = new CountryWriter(sessionFactory, 5);
+        queue = new WriteBehind(sessionFactory, writer, new WriteBehind.Listener() {
+            @Override
+            public void saved(Country country) {
+            }
+
+            @Override
+            public void updated(String previousCode, Country country) {
+            }
+
+            @Override
+            public void deleted(String code, int version) {
+            }
+
+            @Override
+            public void failed(String write, RuntimeException e) {
+                throw e;
+            }
+        }, BURST, BURST, 20);
+        random = new Random(BenchmarkData.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void committedEach() {
+        for (int i = 0; i < BURST; i++) {
+            double internetUsers = random.nextDouble() * 100;
+            writer.update(BenchmarkData.code(random.nextInt(rows)),
+                    country -> country.setInternetUsers(internetUsers));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void queuedAndFlushed() {
+        for (int i = 0; i < BURST; i++) {
+            double internetUsers = random.nextDouble() * 100;
+            queue.update(BenchmarkData.code(random.nextInt(rows)),
+                    country -> country.setInternetUsers(internetUsers));
+        }
+        queue.flush();
+    }
+}
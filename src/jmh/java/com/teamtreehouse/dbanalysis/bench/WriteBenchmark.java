@@ -0,0 +1,73 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.CountryWriter;
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.Country.CountryBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ single-row writes the way the menu makes them, each in its own
+ session and transaction. saved rows use codes past the generated
+ ones, so the table grows by one row per save call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteBenchmark {
+    @Param({"200", "10000", "1000000"})
+    private int rows;
+
+    private SessionFactory sessionFactory;
+    private CountryWriter writer;
+    private Random random;
+    private int nextRow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkData.database(BenchmarkData.snapshot(rows));
+        writer = new CountryWriter(sessionFactory, 5);
+        random = new Random(BenchmarkData.SEED);
+        nextRow = rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Country save() {
+        int row = nextRow++;
+        Country country = new CountryBuilder(BenchmarkData.code(row), BenchmarkData.name(row))
+                .withInternetUsers(random.nextDouble() * 100)
+                .withAdultLiteracyRate(30 + random.nextDouble() * 70)
+                .build();
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.save(country);
+        session.getTransaction().commit();
+        session.close();
+        return country;
+    }
+
+    @Benchmark
+    public Country update() {
+        double internetUsers = random.nextDouble() * 100;
+        return writer.update(BenchmarkData.code(random.nextInt(rows)),
+                country -> country.setInternetUsers(internetUsers));
+    }
+}
@@ -0,0 +1,114 @@
+package com.teamtreehouse.dbanalysis.bench;
+
+import com.teamtreehouse.dbanalysis.data.CountryWriter;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ hammers the write path from several threads at once and checks that
+ no update was lost:
+
+   gradlew writeStress [-Pstress.args="OPS_PER_THREAD [COUNTRIES [THREADS...]]"]
+
+ it works on COUNTRIES generated rows in a fresh in-memory database,
+ never on the real one. for each thread count every thread adds 1 to
+ the internet users of a random country OPS_PER_THREAD times through
+ CountryWriter. with optimistic locking and retries the totals must
+ come out exactly threads * OPS_PER_THREAD.
+ */
+class WriteStress {
+
+    public static void main(String[] args) throws InterruptedException {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int countries = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            threadCounts.add(Integer.parseInt(args[i]));
+        }
+        if (threadCounts.isEmpty()) {
+            for (int threads = 1; threads <= 8; threads *= 2) threadCounts.add(threads);
+        }
+
+        SessionFactory sessionFactory = BenchmarkData.database(BenchmarkData.snapshot(countries));
+        String[] codes = new String[countries];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = BenchmarkData.code(i);
+        }
+
+        boolean lost = false;
+        try {
+            System.out.printf("%n%8s %10s %10s %12s %10s %8s%n",
+                    "threads", "updates", "ms", "updates/s", "retries", "lost");
+            for (int threads : threadCounts) {
+                lost |= run(sessionFactory, codes, threads, ops);
+            }
+        } finally {
+            sessionFactory.close();
+        }
+        System.exit(lost ? 1 : 0);
+    }
+
+    /*
+     returns true when the totals do not add up
+     */
+    private static boolean run(SessionFactory sessionFactory, String[] codes, int threads, int ops)
+            throws InterruptedException {
+        resetRows(sessionFactory);
+        CountryWriter writer = new CountryWriter(sessionFactory, Integer.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ops; i++) {
+                        String code = codes[ThreadLocalRandom.current().nextInt(codes.length)];
+                        writer.update(code, country -> country.setInternetUsers(country.getInternetUsers() + 1));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double millis = (System.nanoTime() - begin) / 1_000_000.0;
+        if (failure.get() != null) throw failure.get();
+
+        long expected = (long) threads * ops;
+        long lost = expected - Math.round(total(sessionFactory));
+        System.out.printf("%8d %10d %10.0f %12.0f %10d %8d%n",
+                threads, expected, millis, expected * 1000 / millis, writer.getConflicts(), lost);
+        return lost != 0;
+    }
+
+    private static void resetRows(SessionFactory sessionFactory) {
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.createQuery("update Country set internetUsers = 0").executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    private static double total(SessionFactory sessionFactory) {
+        Session session = sessionFactory.openSession();
+        Double total = (Double) session
+                .createQuery("select sum(c.internetUsers) from Country c")
+                .uniqueResult();
+        session.close();
+        return total == null ? 0 : total;
+    }
+}
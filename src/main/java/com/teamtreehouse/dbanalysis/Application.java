@@ -1,45 +1,357 @@
 package com.teamtreehouse.dbanalysis;
 
+import com.teamtreehouse.dbanalysis.data.CountryImporter;
+import com.teamtreehouse.dbanalysis.data.CountryIndex;
+import com.teamtreehouse.dbanalysis.data.CountryQuery;
+import com.teamtreehouse.dbanalysis.data.NameSearch;
+import com.teamtreehouse.dbanalysis.data.CountryWriter;
+import com.teamtreehouse.dbanalysis.data.SchemaCheck;
+import com.teamtreehouse.dbanalysis.data.SnapshotFile;
+import com.teamtreehouse.dbanalysis.data.SnapshotHolder;
+import com.teamtreehouse.dbanalysis.data.QueuedWrites;
+import com.teamtreehouse.dbanalysis.data.WriteBehind;
+import com.teamtreehouse.dbanalysis.data.IndicatorQuery;
+import com.teamtreehouse.dbanalysis.data.RankQuery;
+import com.teamtreehouse.dbanalysis.data.StatsQuery;
+import com.teamtreehouse.dbanalysis.data.TableExport;
+import com.teamtreehouse.dbanalysis.http.QueryServer;
+import com.teamtreehouse.dbanalysis.metrics.Metrics;
 import com.teamtreehouse.dbanalysis.model.Country;
 import com.teamtreehouse.dbanalysis.model.Country.CountryBuilder;
-import org.hibernate.Criteria;
+import com.teamtreehouse.dbanalysis.model.CountryIndicator;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+import com.teamtreehouse.dbanalysis.model.IndicatorValue;
+import com.teamtreehouse.dbanalysis.render.Decimals;
+import com.teamtreehouse.dbanalysis.render.TableRenderer;
+import com.teamtreehouse.dbanalysis.render.ValueTableRenderer;
+import com.teamtreehouse.dbanalysis.stats.Correlation;
+import com.teamtreehouse.dbanalysis.stats.CorrelationMatrix;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import com.teamtreehouse.dbanalysis.stats.Distribution;
+import com.teamtreehouse.dbanalysis.stats.Extreme;
+import com.teamtreehouse.dbanalysis.stats.PairStats;
+import com.teamtreehouse.dbanalysis.stats.Ranking;
+import com.teamtreehouse.dbanalysis.stats.RunningStats;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.cfgxml.internal.ConfigLoader;
+import org.hibernate.boot.cfgxml.spi.LoadedConfig;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 public class Application {
-    private static final SessionFactory sessionFactory = buildSessionFactory();
+    // -Dworldbank.cache=true turns on the second-level and query cache for Country
+    private static final boolean CACHE = Boolean.getBoolean("worldbank.cache");
+    private static final String QUERY_CACHE_REGION = "country-queries";
+
+    // rows per transaction for the csv import, -Dworldbank.import.commit=N
+    private static final int IMPORT_COMMIT_INTERVAL = Integer.getInteger("worldbank.import.commit", 10000);
+
+
+    // text, csv or json, -Dworldbank.display.format=csv
+    private static final String DISPLAY_FORMAT = System.getProperty("worldbank.display.format", "text");
+
+    // tables are written here and flushed once they are done, not line by line
+    private static final Writer out = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()), 1 << 16);
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    // echo sql to stdout, off by default since it costs a console write per statement
+    private static final boolean SHOW_SQL = Boolean.getBoolean("worldbank.sql");
+
+    // latency per menu action and data access method, shown by the metrics command
+    private static final Metrics metrics = new Metrics();
+
+    // -Dworldbank.metrics.log=N also writes the metrics to stderr every N seconds
+    private static final int METRICS_LOG_SECONDS = Integer.getInteger("worldbank.metrics.log", 0);
+
+    // -Dworldbank.fast=true skips the schema update when the mapping is the one the database was last checked against
+    private static final boolean FAST_START = Boolean.getBoolean("worldbank.fast");
+
+    // set in fast start, marked current on a clean shutdown
+    private static volatile SchemaCheck schemaCheck;
+
+    // hibernate starts on its own thread while main reads its arguments and shows the menu,
+    // whatever needs the database first waits for it in sessionFactory()
+    private static final FutureTask<SessionFactory> sessionFactoryTask = startSessionFactory();
+
+    // tries for a single update or delete before giving up on a conflict, -Dworldbank.write.attempts=N
+    private static final int WRITE_ATTEMPTS = Integer.getInteger("worldbank.write.attempts", 5);
+    private static CountryWriter countryWriter;
+
+    // -Dworldbank.writebehind=true queues saves, updates and deletes for a background
+    // thread that commits them in groups, flushed before reads in batch mode and on exit
+    private static final boolean WRITE_BEHIND = Boolean.getBoolean("worldbank.writebehind");
+    // longest the first write of a group waits for more, -Dworldbank.writebehind.interval=ms
+    private static final int WRITE_BEHIND_INTERVAL = Integer.getInteger("worldbank.writebehind.interval", 20);
+    // most writes in one transaction, -Dworldbank.writebehind.batch=N
+    private static final int WRITE_BEHIND_BATCH = Integer.getInteger("worldbank.writebehind.batch", 1000);
+    // writes waiting before the next one has to wait for room, -Dworldbank.writebehind.queue=N
+    private static final int WRITE_BEHIND_QUEUE = Integer.getInteger("worldbank.writebehind.queue", 10000);
+    private static WriteBehind writeBehind;
+    // codes and names the queued interactive writes take or free, until they land
+    private static final QueuedWrites queuedWrites = new QueuedWrites();
+    private static CountryIndex countryIndex;
+    // the table as every reader sees it, republished after each write
+    private static final SnapshotHolder snapshots = new SnapshotHolder(Application::fetchSnapshot);
+    // the stats screen, kept in step by the write hooks instead of recomputed
+    private static volatile RunningStats runningStats;
+
+    // one scanner for the whole run, a new one per prompt would swallow piped input
+    private static final Scanner scanner = new Scanner(System.in);
+
+    // -Dworldbank.stats.mode=query computes the stats screen inside the database
+    private static final boolean QUERY_STATS = "query".equals(System.getProperty("worldbank.stats.mode"));
+
+    // rank error allowed in the percentiles, as a share of the count, -Dworldbank.stats.error=0.001
+    private static final double STATS_ERROR = Double.parseDouble(System.getProperty("worldbank.stats.error", "0.01"));
+
+    // bars in each histogram, -Dworldbank.stats.bins=N
+    private static final int HISTOGRAM_BINS = Math.max(1, Integer.getInteger("worldbank.stats.bins", 10));
+
+    // the most names listed when what was typed matches more than one
+    private static final int SUGGESTIONS = 10;
+
+    // -Dworldbank.http.port=N serves the json api alongside the menu or batch run
+    private static final Integer HTTP_PORT = Integer.getInteger("worldbank.http.port");
+    private static QueryServer queryServer;
+
+    private static FutureTask<SessionFactory> startSessionFactory() {
+        FutureTask<SessionFactory> task = new FutureTask<>(Application::buildSessionFactory);
+        Thread thread = new Thread(task, "hibernate-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    private static SessionFactory sessionFactory() {
+        try {
+            return sessionFactoryTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HibernateException("Interrupted while starting Hibernate", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new HibernateException("Could not start Hibernate", e.getCause());
+        }
+    }
+
+    private static synchronized CountryWriter countryWriter() {
+        if (countryWriter == null) countryWriter = new CountryWriter(sessionFactory(), WRITE_ATTEMPTS);
+        return countryWriter;
+    }
+
+    /*
+     returns the write-behind queue, starting it on first use, or null when it is off
+     */
+    static synchronized WriteBehind writeBehind() {
+        if (!WRITE_BEHIND) return null;
+        if (writeBehind == null) {
+            writeBehind = new WriteBehind(sessionFactory(), countryWriter(), new WriteBehind.Listener() {
+                @Override
+                public void saved(Country country) {
+                    Application.saved(country);
+                    queuedWrites.landed();
+                }
+
+                @Override
+                public void updated(String previousCode, Country country) {
+                    Application.updated(previousCode, country);
+                    queuedWrites.landed();
+                }
+
+                @Override
+                public void deleted(String code, int version) {
+                    Application.deleted(code, version);
+                    queuedWrites.landed();
+                }
+
+                @Override
+                public void failed(String write, RuntimeException e) {
+                    System.err.printf("Queued %s failed: %s%n", write, e.getMessage());
+                    queuedWrites.landed();
+                }
+            }, WRITE_BEHIND_QUEUE, WRITE_BEHIND_BATCH, WRITE_BEHIND_INTERVAL);
+            // queued writes are only durable once committed, so commit them on any exit
+            Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close, "write-behind-close"));
+        }
+        return writeBehind;
+    }
+
+    /*
+     returns the write-behind queue if anything has been queued yet, otherwise null
+     */
+    private static synchronized WriteBehind startedWriteBehind() {
+        return writeBehind;
+    }
+
+    /*
+     waits for queued writes to commit, does nothing when write-behind is off
+     */
+    static void flushWrites() {
+        WriteBehind queue = startedWriteBehind();
+        if (queue == null) return;
+        long start = System.nanoTime();
+        queue.flush();
+        metrics.record("write-behind flush", start);
+    }
 
     private static SessionFactory buildSessionFactory() {
-        final ServiceRegistry registry = new StandardServiceRegistryBuilder().configure().build();
-        return new MetadataSources(registry).buildMetadata().buildSessionFactory();
+        final StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder();
+        // the cfg.xml settings are read into a map first, so one can be left out as well as overridden
+        LoadedConfig config = new ConfigLoader(builder.getBootstrapServiceRegistry())
+                .loadConfigXmlResource(StandardServiceRegistryBuilder.DEFAULT_CFG_RESOURCE_NAME);
+        Map<?, ?> settings = config.getConfigurationValues();
+        // -Dworldbank.db=./data/synthetic works on another database file, such as a generated one
+        String database = System.getProperty("worldbank.db");
+        Object url = database != null ? "jdbc:h2:" + database : settings.get("hibernate.connection.url");
+        if (url == null) url = settings.get("connection.url");
+        SchemaCheck schema = new SchemaCheck((String) url, Country.class, IndicatorValue.class);
+        boolean schemaCurrent = FAST_START && schema.isCurrent();
+        if (schemaCurrent) {
+            // no update: trust the last check when the mapping has not changed, otherwise update as configured.
+            // 5.1 has no "none", leaving the setting out is how to ask for nothing
+            settings.remove("hibernate.hbm2ddl.auto");
+            settings.remove("hbm2ddl.auto");
+        }
+        builder.configure(config);
+        if (database != null) builder.applySetting("hibernate.connection.url", url);
+        if (schemaCurrent) {
+            // the dialect is configured, so skip reading the driver metadata as well
+            builder.applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false");
+        }
+        if (CACHE) {
+            // local in-process cache, regions are sized in ehcache.xml
+            builder.applySetting("hibernate.cache.use_second_level_cache", "true")
+                    .applySetting("hibernate.cache.use_query_cache", "true")
+                    .applySetting("hibernate.cache.region.factory_class",
+                            "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+        } else {
+            // Country is marked @Cacheable, so the cache has to be switched off explicitly
+            builder.applySetting("hibernate.cache.use_second_level_cache", "false");
+        }
+        // counts for the metrics command, without the per-session summary statistics would also log.
+        // -Dworldbank.sql=true echoes every statement again
+        builder.applySetting("hibernate.generate_statistics", "true")
+                .applySetting("hibernate.session.events.log", "false")
+                .applySetting("hibernate.show_sql", String.valueOf(SHOW_SQL));
+        final ServiceRegistry registry = builder.build();
+        SessionFactory factory = new MetadataSources(registry).buildMetadata().buildSessionFactory();
+        if (!schemaCurrent) RankQuery.createIndexes(factory);
+        // only fast start reads the marker, so a plain run leaves no file behind
+        if (FAST_START) schemaCheck = schema;
+        return factory;
     }
 
-    public static void main(String[] args) throws ClassNotFoundException, IllegalAccessException {
+    public static void main(String[] args) throws ClassNotFoundException, IllegalAccessException, IOException {
+        if (HTTP_PORT != null) {
+            queryServer = new QueryServer(HTTP_PORT, snapshots::get);
+            queryServer.start();
+            System.err.printf("Serving the json api on port %d%n", queryServer.getPort());
+        }
+
+        if (METRICS_LOG_SECONDS > 0) {
+            ScheduledExecutorService metricsLog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            metricsLog.scheduleAtFixedRate(() -> System.err.print(metrics.report(sessionFactory().getStatistics())),
+                    METRICS_LOG_SECONDS, METRICS_LOG_SECONDS, TimeUnit.SECONDS);
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // run commands from a file, or from stdin when given "-" or nothing
+            int failures;
+            if (args.length > 1 && !args[1].equals("-")) {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                    failures = new BatchRunner(reader).run();
+                }
+            } else {
+                failures = new BatchRunner(new BufferedReader(new InputStreamReader(System.in))).run();
+            }
+            shutdown();
+            System.exit(failures == 0 ? 0 : 1);
+        }
+
         LinkedHashMap<String, String> mMenu = new LinkedHashMap<String, String>();
 
         //Create menu options
         mMenu.put("display", "Display data in a table format.");
         mMenu.put("stats", "View statistics such as max, min, and correlation coefficient.");
+        mMenu.put("verify", "Check the running stats against a full recompute.");
+        mMenu.put("indicators", "View statistics for any two indicators over a span of years.");
+        mMenu.put("matrix", "View the correlation between every pair of several indicators.");
+        mMenu.put("rank", "View the top or bottom countries by an indicator, or those in a range.");
+        mMenu.put("search", "Find countries by the start of their name, or by a name close to it.");
         mMenu.put("edit", "Edit information for a country.");
         mMenu.put("add", "Add a country to the database.");
         mMenu.put("delete", "Delete a country from the database.");
+        mMenu.put("import", "Import countries from a World Bank or flat csv file.");
+        mMenu.put("snapshot", "Export the table to a snapshot file, or view the stats or table of one.");
+        mMenu.put("export", "Write the countries or indicator values to a csv or json lines file.");
+        if (CACHE) mMenu.put("cache", "Show cache hit and miss counts.");
+        mMenu.put("metrics", "Show timings, SQL counts and Hibernate statistics.");
         mMenu.put("quit", "Exit the program.");
 
         String choice;
         do {
             choice = promptAction(mMenu);
+            long start = System.nanoTime();
             switch (choice) {
                 case "display":
-                    displayTable(fetchAllCountries());
+                    display();
                     break;
                 case "stats":
-                    displayStats(fetchAllCountries());
+                    stats();
+                    break;
+                case "verify":
+                    verifyStats();
+                    break;
+                case "indicators":
+                    indicatorStats();
+                    break;
+                case "matrix":
+                    correlationMatrix();
+                    break;
+                case "rank":
+                    rank();
+                    break;
+                case "search":
+                    search();
                     break;
                 case "edit":
                     updateCountryInfo();
@@ -50,40 +362,162 @@ public class Application {
                 case "delete":
                     deleteCountry();
                     break;
+                case "import":
+                    importCountries();
+                    break;
+                case "snapshot":
+                    snapshot();
+                    break;
+                case "export":
+                    export();
+                    break;
+                case "metrics":
+                    printMetrics();
+                    break;
                 case "quit":
                     System.out.println("Now quiting program... Goodbye.");
                     break;
+                case "cache":
+                    if (CACHE) {
+                        printCacheStats();
+                    } else {
+                        // not on the menu without the cache, so it is unknown like anything else
+                        printUnknownChoice(choice);
+                    }
+                    break;
                 default:
-                    System.out.printf("Unknown choice:  '%s'. Try again.  %n%n%n",
-                            choice);
+                    printUnknownChoice(choice);
 
             }
+            if (mMenu.containsKey(choice)) metrics.record("menu " + choice, start);
         } while (!choice.equals("quit"));
+        shutdown();
+    }
+
+    private static void printUnknownChoice(String choice) {
+        System.out.printf("Unknown choice:  '%s'. Try again.  %n%n%n",
+                choice);
+    }
+
+    private static void shutdown() {
+        if (queryServer != null) queryServer.stop();
+        WriteBehind queue = startedWriteBehind();
+        if (queue != null) queue.close();
+        sessionFactory().close();
+        // the marker names the database file as it was left, so it is written once the file is closed
+        if (schemaCheck != null) schemaCheck.markCurrent();
+    }
+
+    static void display() {
+        displayTable(snapshots.get());
+    }
+
+    static void stats() {
+        displayStats(QUERY_STATS ? queryStats() : runningStats().stats());
+    }
+
+    /*
+     recomputes the stats from the whole table and compares them with the running ones
+     returns true when they match
+     */
+    static boolean verifyStats() {
+        List<String> differences = runningStats().verify(CountryStats.of(fetchSnapshot(null), STATS_ERROR));
+        if (differences.isEmpty()) {
+            System.out.printf("%n%nThe running stats match a full recompute.%n%n");
+            return true;
+        }
+        System.out.printf("%n%nThe running stats do not match a full recompute:%n");
+        for (String difference : differences) {
+            System.out.println(" " + difference);
+        }
+        // start again from the table so the next stats are right
+        resetRunningStats();
+        System.out.println();
+        return false;
+    }
+
+    static SessionFactory getSessionFactory() {
+        return sessionFactory();
+    }
+
+    static SnapshotHolder getSnapshots() {
+        return snapshots;
+    }
+
+    static Metrics getMetrics() {
+        return metrics;
+    }
+
+    static void printMetrics() {
+        System.out.printf("%n%n%s%n", metrics.report(sessionFactory().getStatistics()));
+        WriteBehind queue = startedWriteBehind();
+        if (queue != null) {
+            System.out.printf("Write-behind: %d writes in %d transactions, %d failed, %d queued%n%n",
+                    queue.getWritten(), queue.getCommits(), queue.getFailures(), queue.getQueued());
+        }
+    }
+
+    /*
+     keep everything derived from the table in step with a write.
+     called after the transaction that made the change has committed.
+     */
+    static void saved(Country country) {
+        snapshots.put(country);
+        countryIndex().put(country);
+        RunningStats running = runningStats;
+        if (running != null) running.put(country);
+        invalidateQueryServer();
     }
 
-    private static void displayStats(List<Country> countries) {
+    static void updated(String previousCode, Country country) {
+        snapshots.update(previousCode, country);
+        countryIndex().update(previousCode, country);
+        RunningStats running = runningStats;
+        if (running != null) running.update(previousCode, country);
+        invalidateQueryServer();
+    }
+
+    static void deleted(String code, int version) {
+        snapshots.remove(code, version);
+        countryIndex().remove(code);
+        RunningStats running = runningStats;
+        if (running != null) running.remove(code);
+        invalidateQueryServer();
+    }
+
+    private static void invalidateQueryServer() {
+        if (queryServer != null) queryServer.invalidate();
+    }
+
+    private static void displayStats(CountryStats stats) {
         System.out.printf("%n%nHere is a list of all the stats:%n%n");
         // Internet Users
-        maxInternet(countries);
-        notNullMaxInternet(countries);
+        printInternetExtreme("Country with the highest Internet Users", stats.getMaxInternet());
+        printInternetExtreme("Country with the highest Internet Users and recorded Literacy Rate",
+                stats.getMaxInternetBoth());
 
-        minInternet(countries);
-        notNullMinInternet(countries);
+        printInternetExtreme("Country with the lowest Internet Users", stats.getMinInternet());
+        printInternetExtreme("Country with the lowest Internet Users and recorded Literacy Rate",
+                stats.getMinInternetBoth());
 
         // Literacy rates
-        maxLiteracy(countries);
-        notNullmaxLiteracy(countries);
+        printLiteracyExtreme("Country with the highest Literacy Rate", stats.getMaxLiteracy());
+        printLiteracyExtreme("Country with the highest Literacy Rate and recorded Internet Users",
+                stats.getMaxLiteracyBoth());
+
+        printLiteracyExtreme("Country with the lowest Literacy Rate", stats.getMinLiteracy());
+        printLiteracyExtreme("Country with the lowest Literacy Rate and recorded Internet Users",
+                stats.getMinLiteracyBoth());
 
-        minLiteracy(countries);
-        notNullminLiteracy(countries);
+        // Percentiles and histograms, both indicators are percentages
+        printDistribution("Internet Users", stats.getInternetDistribution(), 0, 100);
+        printDistribution("Literacy Rate", stats.getLiteracyDistribution(), 0, 100);
 
         // Correlation Coefficient
-        corrCoef();
+        corrCoef(stats.getCorrelation());
     }
 
-
     private static String promptAction(LinkedHashMap<String, String> mMenu) {
-        Scanner scanner = new Scanner(System.in);
         for (Map.Entry<String, String> option : mMenu.entrySet()) {
             System.out.printf("%s - %s %n",
                     option.getKey(),
@@ -94,43 +528,88 @@ public class Application {
         return choice.trim().toLowerCase();
     }
 
-    private static void update(Country country) {
-        // open a session
-        Session session = sessionFactory.openSession();
-
-        // begin a transaction
-        session.beginTransaction();
-
-        // use the session to update the contact
-        session.update(country);
-
-        // commit the transaction
-        session.getTransaction().commit();
-
-        // close the session
-        session.close();
+    /*
+     takes the code, name and @Version a country had when it was shown,
+     the country as edited and the edit to make.
+     when someone else changed the country since, nothing is saved and
+     the country is shown again as it is now
+     */
+    private static void update(String previousCode, String previousName, int version,
+                               Country edited, Consumer<Country> change) {
+        long start = System.nanoTime();
+        if (WRITE_BEHIND) {
+            queuedWrites.queued(previousCode, previousName, edited.getCode(), edited.getName());
+            writeBehind().update(previousCode, version, change);
+            metrics.record("queue update", start);
+            System.out.printf("%nThe change to %s is queued.%n%n", previousCode);
+            return;
+        }
+        Country country;
+        try {
+            country = countryWriter().update(previousCode, version, change);
+        } catch (CountryWriter.ConflictException e) {
+            metrics.record("db update", start);
+            printConflict(e.getCurrent());
+            return;
+        }
+        metrics.record("db update", start);
+        if (country == null) {
+            System.out.printf("%nI am sorry, %s was deleted before the change was saved.%n%n", previousCode);
+            return;
+        }
+        updated(previousCode, country);
     }
 
-    public static void delete(Country country) {
-        // open a session
-        Session session = sessionFactory.openSession();
-
-        //begin a transaction
-        session.beginTransaction();
-
-        // use the session to delete the contact
-        session.delete(country);
-
-        //commit the transaction
-        session.getTransaction().commit();
+    /*
+     takes the country as it was shown
+     returns true once it is deleted, false when the delete was only queued
+     or it was already gone or changed by someone else since
+     */
+    public static boolean delete(Country country) {
+        long start = System.nanoTime();
+        if (WRITE_BEHIND) {
+            queuedWrites.queued(country.getCode(), country.getName(), null, null);
+            writeBehind().delete(country.getCode(), country.getVersion());
+            metrics.record("queue delete", start);
+            System.out.printf("%n%nThe delete of %s is queued.%n%n", country.getCode());
+            return false;
+        }
+        Country deleted;
+        try {
+            deleted = countryWriter().delete(country.getCode(), country.getVersion());
+        } catch (CountryWriter.ConflictException e) {
+            metrics.record("db delete", start);
+            printConflict(e.getCurrent());
+            return false;
+        }
+        metrics.record("db delete", start);
+        if (deleted == null) {
+            System.out.printf("%nI am sorry, %s was already deleted.%n%n", country.getCode());
+            return false;
+        }
+        deleted(deleted.getCode(), deleted.getVersion());
+        return true;
+    }
 
-        //close session
-        session.close();
+    private static void printConflict(Country current) {
+        System.out.printf("%nI am sorry, %s was changed by someone else after it was shown, " +
+                "so nothing was saved. This is it now:%n", current.getCode());
+        printCountry(current);
     }
 
-    private static void save(Country country ) {
+    /*
+     returns true once the country is saved, false when the save was only queued
+     */
+    private static boolean save(Country country ) {
+        long start = System.nanoTime();
+        if (WRITE_BEHIND) {
+            queuedWrites.queued(null, null, country.getCode(), country.getName());
+            writeBehind().save(country);
+            metrics.record("queue save", start);
+            return false;
+        }
         // Open a session
-        Session session = sessionFactory.openSession();
+        Session session = sessionFactory().openSession();
 
         // Begin a transaction
         session.beginTransaction();
@@ -143,46 +622,364 @@ public class Application {
 
         //close the session
         session.close();
+        metrics.record("db save", start);
+
+        saved(country);
+        return true;
     }
 
+    /*
+     looks a single country up by its code in the current snapshot, or returns null.
+     writes go through CountryWriter, which reads the latest row itself
+     */
+    private static Country findCountry(String code) {
+        long start = System.nanoTime();
+        Country country = snapshots.find(code);
+        metrics.record("snapshot find", start);
+        return country;
+    }
 
-    private static List<Country> fetchAllCountries() {
+    /*
+     asks the database for the stats instead of loading every row
+     */
+    private static CountryStats queryStats() {
+        long start = System.nanoTime();
         // Open a session
-        Session session = sessionFactory.openSession();
+        Session session = sessionFactory().openSession();
 
-        // Create criteria object
-        Criteria criteria = session.createCriteria(Country.class);
-
-        //Get a list of Contact objects according to the Criteria object
-        List<Country> countries = criteria.list();
-        for(Country c : countries) {
-            if(c.getInternetUsers() == null) c.setInternetUsers(0.00);
-            if(c.getAdultLiteracyRate() == null) c.setAdultLiteracyRate(0.00);
-        }
+        CountryStats stats = StatsQuery.run(session);
 
         // Close the session
         session.close();
+        metrics.record("db queryStats", start);
+
+        return stats;
+    }
+
+    /*
+     prints hit and miss counts for the Country cache regions.
+     writes through save, update and delete invalidate them.
+     */
+    private static void printCacheStats() {
+        Statistics statistics = sessionFactory().getStatistics();
+        SecondLevelCacheStatistics entities = statistics.getSecondLevelCacheStatistics("country");
+        if (entities == null) {
+            System.out.printf("%n%nThe country cache region has not been created.%n%n");
+            return;
+        }
+        System.out.printf("%n%nCountry entity cache: %d hits, %d misses, %d puts, %d in memory%n",
+                entities.getHitCount(),
+                entities.getMissCount(),
+                entities.getPutCount(),
+                entities.getElementCountInMemory());
+        System.out.printf("Country query cache: %d hits, %d misses, %d puts%n%n",
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount());
+    }
+
+    /*
+     returns the code and name index, building it on first use
+     */
+    private static synchronized CountryIndex countryIndex() {
+        if (countryIndex == null) countryIndex = CountryIndex.of(snapshots.get());
+        return countryIndex;
+    }
+
+    private static synchronized void resetCountryIndex() {
+        countryIndex = null;
+    }
+
+    /*
+     returns the running stats, building them from the table on first use
+     */
+    private static synchronized RunningStats runningStats() {
+        if (runningStats == null) runningStats = RunningStats.of(snapshots.get());
+        return runningStats;
+    }
 
-        return countries;
+    private static synchronized void resetRunningStats() {
+        runningStats = null;
+    }
+
+    /*
+     reads the table into a snapshot through CountryQuery.
+     takes where to put the @Version of each row by code, or null
+     */
+    private static CountrySnapshot fetchSnapshot(Map<String, Integer> versions) {
+        long start = System.nanoTime();
+        CountrySnapshot snapshot = new CountryQuery(sessionFactory(), CACHE ? QUERY_CACHE_REGION : null)
+                .snapshot(versions);
+        metrics.record("db fetchSnapshot", start);
+        return snapshot;
     }
 
     private static void deleteCountry() {
-        Scanner scanner = new Scanner(System.in);
         Country c = null;
         printCountriesByName();
         c = promptForCountry(scanner);
-        if (c == null) System.out.printf("%nExiting...%n");
+        if (c == null) {
+            System.out.printf("%nExiting...%n");
+            return;
+        }
         printCountry(c);
         System.out.printf("%n%n(yes or no) Would you like to delete the above country?%n");
         String answer = scanner.nextLine();
         if (answer.trim().equalsIgnoreCase("yes")) {
-            delete(c);
-            System.out.printf("%n%nCountry deleted.%n%n");
+            if (delete(c)) System.out.printf("%n%nCountry deleted.%n%n");
+        }
+    }
+
+    private static void importCountries() {
+        System.out.printf("%nPlease provide the path of the csv file to import: %n");
+        importFile(Paths.get(scanner.nextLine().trim()));
+    }
+
+    /*
+     takes the path of a csv file
+     returns true when every row was read and written
+     */
+    static boolean importFile(Path file) {
+        // the import resets everything derived from the table, queued writes go in first
+        flushWrites();
+        if (!Files.isReadable(file)) {
+            System.out.printf("%nI am sorry, %s cannot be read.%n%n", file);
+            return false;
+        }
+        boolean imported = false;
+        int batchSize = Math.max(1, sessionFactory().getSessionFactoryOptions().getJdbcBatchSize());
+        CountryImporter importer = new CountryImporter(sessionFactory(), batchSize, IMPORT_COMMIT_INTERVAL);
+        long start = System.nanoTime();
+        try {
+            CountryImporter.Result result = importer.importFile(file);
+            System.out.printf("%n%nRead %d rows (%d skipped), wrote %d rows (%d indicator values) " +
+                            "in %d ms, %d commits, %.0f rows/s%n%n",
+                    result.getRead(),
+                    result.getSkipped(),
+                    result.getWritten(),
+                    result.getValues(),
+                    result.getElapsedMillis(),
+                    result.getCommits(),
+                    result.getRowsPerSecond());
+            imported = true;
+        } catch (IOException | HibernateException e) {
+            System.out.printf("%nImport failed: %s%n%n", e.getMessage());
+        }
+        metrics.record("db import", start);
+        // the import writes around Hibernate, so drop anything derived from the old rows
+        sessionFactory().getCache().evictAllRegions();
+        snapshots.reset();
+        resetCountryIndex();
+        resetRunningStats();
+        invalidateQueryServer();
+        return imported;
+    }
+
+    private static void rank() {
+        System.out.printf("%nType top, bottom or range: %n");
+        String kind = scanner.nextLine().trim().toLowerCase();
+        if (!kind.equals("top") && !kind.equals("bottom") && !kind.equals("range")) {
+            tryAgain(kind);
+            return;
+        }
+        CountryIndicator indicator;
+        do {
+            System.out.printf("%nInternet or literacy? %n");
+            String answer = scanner.nextLine();
+            indicator = CountryIndicator.parse(answer);
+            if (indicator == null) tryAgain(answer);
+        } while (indicator == null);
+        if (kind.equals("range")) {
+            double low = promptForNumber("lowest value");
+            double high = promptForNumber("highest value");
+            range(indicator, Math.min(low, high), Math.max(low, high), null);
+        } else {
+            top(indicator, (int) promptForNumber("number of countries"), kind.equals("top"), null);
+        }
+    }
+
+    private static double promptForNumber(String what) {
+        do {
+            System.out.printf("%nPlease provide the %s: %n", what);
+            String answer = scanner.nextLine().trim();
+            if (canBeDouble(answer)) return Double.parseDouble(answer);
+            tryAgain(answer);
+        } while (true);
+    }
+
+    /*
+     takes the indicator, how many countries, whether to start from the
+     highest, and a snapshot file to read instead of the database or null
+     prints them best first
+     returns false when the snapshot file could not be read
+     */
+    static boolean top(CountryIndicator indicator, int k, boolean highest, Path file) {
+        long start = System.nanoTime();
+        CountrySnapshot result;
+        if (file != null) {
+            CountrySnapshot snapshot = mapSnapshot(file);
+            if (snapshot == null) return false;
+            result = Ranking.top(snapshot, indicator, k, highest);
+        } else {
+            Session session = sessionFactory().openSession();
+            try {
+                result = RankQuery.top(session, indicator, k, highest);
+            } finally {
+                session.close();
+            }
+            metrics.record("db top", start);
+        }
+        System.out.printf("%n%n%s %d countries by %s:%n%n", highest ? "Top" : "Bottom", k, indicator.getTitle());
+        displayTable(result);
+        return true;
+    }
+
+    /*
+     takes the indicator, an inclusive range of values, and a snapshot
+     file to read instead of the database or null
+     prints every country with a value in the range, lowest first
+     returns false when the snapshot file could not be read
+     */
+    static boolean range(CountryIndicator indicator, double low, double high, Path file) {
+        long start = System.nanoTime();
+        CountrySnapshot result;
+        if (file != null) {
+            CountrySnapshot snapshot = mapSnapshot(file);
+            if (snapshot == null) return false;
+            result = Ranking.range(snapshot, indicator, low, high);
+        } else {
+            Session session = sessionFactory().openSession();
+            try {
+                result = RankQuery.range(session, indicator, low, high);
+            } finally {
+                session.close();
+            }
+            metrics.record("db range", start);
+        }
+        System.out.printf("%n%nCountries with %s from %s to %s:%n%n", indicator.getTitle(),
+                Decimals.fixed2(low, true), Decimals.fixed2(high, true));
+        displayTable(result);
+        return true;
+    }
+
+    /*
+     returns the snapshot in the file, or null after saying why it could not be read
+     */
+    private static CountrySnapshot mapSnapshot(Path file) {
+        try {
+            return SnapshotFile.map(file);
+        } catch (NoSuchFileException e) {
+            System.out.printf("%nI am sorry, %s does not exist.%n%n", file);
+        } catch (IOException e) {
+            System.out.printf("%nSnapshot failed: %s%n%n", e.getMessage());
+        }
+        return null;
+    }
+
+    private static void snapshot() {
+        System.out.printf("%nType export to save the table to a snapshot file, " +
+                "or stats or display to read one: %n");
+        String action = scanner.nextLine().trim().toLowerCase();
+        System.out.printf("%nPlease provide the path of the snapshot file: %n");
+        snapshot(action, Paths.get(scanner.nextLine().trim()));
+    }
+
+    /*
+     takes export, stats or display and the path of a snapshot file.
+     stats and display run over the mapped file, without the database.
+     returns false when the action is unknown or the file could not be written or read
+     */
+    static boolean snapshot(String action, Path file) {
+        long start = System.nanoTime();
+        try {
+            switch (action) {
+                case "export":
+                    CountrySnapshot table = snapshots.get();
+                    long bytes = SnapshotFile.write(table, file);
+                    System.out.printf("%n%nWrote %d rows (%d bytes) to %s in %.2f ms%n%n",
+                            table.size(), bytes, file, (System.nanoTime() - start) / 1_000_000.0);
+                    return true;
+                case "stats":
+                case "display":
+                    CountrySnapshot snapshot = mapSnapshot(file);
+                    if (snapshot == null) return false;
+                    metrics.record("snapshot map", start);
+                    System.out.printf("%n%nMapped %d rows from %s in %.2f ms%n",
+                            snapshot.size(), file, (System.nanoTime() - start) / 1_000_000.0);
+                    if (action.equals("stats")) {
+                        displayStats(CountryStats.of(snapshot, STATS_ERROR));
+                    } else {
+                        displayTable(snapshot);
+                    }
+                    return true;
+                default:
+                    tryAgain(action);
+                    return false;
+            }
+        } catch (NoSuchFileException e) {
+            System.out.printf("%nI am sorry, %s does not exist.%n%n", file);
+            return false;
+        } catch (IOException e) {
+            System.out.printf("%nSnapshot failed: %s%n%n", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void export() {
+        System.out.printf("%nType countries, values for every indicator, or an indicator code to export: %n");
+        String table = scanner.nextLine().trim();
+        System.out.printf("%nType csv or jsonl: %n");
+        String format = scanner.nextLine().trim().toLowerCase();
+        System.out.printf("%nPlease provide the path of the file, ending in .gz to compress it: %n");
+        export(table, format, Paths.get(scanner.nextLine().trim()));
+    }
+
+    /*
+     takes countries, values or an indicator code, csv or jsonl, and the file to write.
+     streams the rows from the database into the file, gzip compressed when it ends with .gz
+     returns false when the table or format is unknown or the file could not be written
+     */
+    static boolean export(String table, String format, Path file) {
+        if (!format.equals("csv") && !format.equals("jsonl")) {
+            tryAgain(format);
+            return false;
+        }
+        // the export reads the database, queued writes go in first
+        flushWrites();
+        Session session = sessionFactory().openSession();
+        long start = System.nanoTime();
+        try {
+            long rows;
+            if (table.equalsIgnoreCase("countries")) {
+                try (Writer writer = TableExport.open(file)) {
+                    rows = TableExport.countries(session, TableRenderer.forFormat(format, writer));
+                }
+            } else {
+                String indicator = table.equalsIgnoreCase("values") ? null : table;
+                if (indicator != null && !IndicatorQuery.listIndicators(session).contains(indicator)) {
+                    System.out.printf("%nI am sorry, there are no values for %s.%n%n", indicator);
+                    return false;
+                }
+                try (Writer writer = TableExport.open(file)) {
+                    rows = TableExport.values(session, indicator, ValueTableRenderer.forFormat(format, writer));
+                }
+            }
+            metrics.record("db export", start);
+            long bytes = Files.size(file);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("%n%nWrote %d rows (%d bytes%s) to %s in %.2f ms, %.0f rows/s, %.1f MB/s%n%n",
+                    rows, bytes, TableExport.isCompressed(file) ? ", gzip" : "", file,
+                    seconds * 1000, rows / seconds, bytes / seconds / (1 << 20));
+            return true;
+        } catch (IOException | UncheckedIOException | HibernateException e) {
+            System.out.printf("%nExport failed: %s%n%n", e.getMessage());
+            return false;
+        } finally {
+            session.close();
         }
     }
 
     private static void addCountry() {
-        Scanner scanner = new Scanner(System.in);
         System.out.printf("%nLet's add a country.%n");
         boolean haveName = false;
         boolean haveInternet = false;
@@ -225,7 +1022,7 @@ public class Application {
         } while (!haveLiteracy);
         do {
         System.out.printf("%nPlease provide a country code (String, 3 in length): %n");
-        countryCode = scanner.nextLine();
+        countryCode = scanner.nextLine().trim().toUpperCase();
         if (countryCode.trim().length() == 3 && codeAvailable(countryCode)) {
             haveCode = true;
         } else if (countryCode.trim().length() != 3) {
@@ -243,22 +1040,24 @@ public class Application {
                     .withInternetUsers(doubleCountryInternet)
                     .withAdultLiteracyRate(doubleLiteracyRate)
                     .build();
-            save(country);
-            System.out.printf("%nCountry added as:%n");
+            if (save(country)) {
+                System.out.printf("%nCountry added as:%n");
+            } else {
+                System.out.printf("%nCountry queued to be added as:%n");
+            }
             printCountry(country);
         }
     }
 
-    private static boolean nameAvailable(String countryName) {
-        List<Country> countries = fetchAllCountries();
-        for (Country c : countries) {
-            if (c.getName().equalsIgnoreCase(countryName.trim())) return false;
-        }
-        return true;
+    /*
+     the queue is asked before the index, a write that lands in between is in the index already
+     */
+    static boolean nameAvailable(String countryName) {
+        if (queuedWrites.isNameTaken(countryName)) return false;
+        return queuedWrites.isNameFreed(countryName) || !countryIndex().isNameTaken(countryName);
     }
 
     private static void updateCountryInfo() {
-        Scanner scanner = new Scanner(System.in);
         boolean done = false;
         Country c;
         do {
@@ -266,8 +1065,11 @@ public class Application {
             printCountriesByName();
             c = promptForCountry(scanner);
             if (c == null) {
-                done = true;
+                return;
             }
+            String previousCode = c.getCode();
+            String previousName = c.getName();
+            int version = c.getVersion();
             System.out.printf("%nSelected Country:%n");
             printCountry(c);
             String change = promptForChange(scanner);
@@ -276,45 +1078,107 @@ public class Application {
             }
             if (change.trim().toLowerCase().equals("name")) {
                 promptForNewName(scanner, c);
-                update(c);
+                String name = c.getName();
+                update(previousCode, previousName, version, c, latest -> latest.setName(name));
                 done = true;
             }
             if (change.trim().toLowerCase().equals("internet users")) {
                 promptForNewInternet(scanner, c);
-                update(c);
+                Double internetUsers = c.getInternetUsers();
+                update(previousCode, previousName, version, c, latest -> latest.setInternetUsers(internetUsers));
                 done = true;
             }
             if (change.trim().toLowerCase().equals("literacy rate")) {
                 promptForNewLiteracy(scanner, c);
-                update(c);
+                Double literacyRate = c.getAdultLiteracyRate();
+                update(previousCode, previousName, version, c, latest -> latest.setAdultLiteracyRate(literacyRate));
                 done = true;
             }
             if (change.trim().toLowerCase().equals("code")) {
                 promptForNewCode(scanner, c);
-                update(c);
+                String code = c.getCode();
+                update(previousCode, previousName, version, c, latest -> latest.setCode(code));
                 done = true;
             }
         } while (!done);
     }
 
+    /*
+     an exact name, or the start of only one name, selects a country.
+     otherwise the names it could mean are listed and the prompt repeats
+     */
     private static Country promptForCountry(Scanner scanner) {
         boolean done = false;
         Country country = null;
         do {
             System.out.printf("%nWhich country would you like to select? or cancel%n");
             String updateCountry = scanner.nextLine();
-            for ( Country c : fetchAllCountries()) {
-                if (c.getName().equalsIgnoreCase(updateCountry.trim())) {
-                    country = c;
-                    done = true;
-                } else if (updateCountry.trim().equalsIgnoreCase("cancel")) {
-                    done = true;
-                }
-            } if (!done) tryAgain(updateCountry);
+            if (updateCountry.trim().equalsIgnoreCase("cancel")) return null;
+            String code = countryIndex().findCodeByName(updateCountry);
+            List<NameSearch.Match> matches = Collections.emptyList();
+            if (code == null && !updateCountry.trim().isEmpty()) {
+                matches = findNames(updateCountry);
+                if (matches.size() == 1) code = matches.get(0).getCode();
+            }
+            if (code != null) {
+                country = findCountry(code);
+                done = country != null;
+            }
+            if (!done) {
+                tryAgain(updateCountry);
+                printNames("Did you mean:", matches);
+            }
         } while(!done);
         return country;
     }
 
+    /*
+     the names starting with what was typed, or when there are none,
+     the names a few edits away from it, closest first
+     */
+    private static List<NameSearch.Match> findNames(String text) {
+        // built on first use, which is not part of the search
+        CountryIndex index = countryIndex();
+        long start = System.nanoTime();
+        List<NameSearch.Match> matches = index.namesStartingWith(text, SUGGESTIONS);
+        if (matches.isEmpty()) {
+            // one edit for every four letters, so short names do not match everything
+            int maxEdits = Math.min(3, Math.max(1, text.trim().length() / 4));
+            matches = index.namesCloseTo(text, maxEdits, SUGGESTIONS);
+        }
+        metrics.record("index search", start);
+        return matches;
+    }
+
+    private static void search() {
+        System.out.printf("%nType the start of a country name, or a name close to it:%n");
+        search(scanner.nextLine());
+    }
+
+    /*
+     takes the start of a name or a misspelt name
+     returns true when any country matched
+     */
+    static boolean search(String text) {
+        List<NameSearch.Match> matches = text.trim().isEmpty()
+                ? Collections.emptyList() : findNames(text);
+        if (matches.isEmpty()) {
+            System.out.printf("%nNo country names match %s.%n%n", text.trim());
+            return false;
+        }
+        printNames("Countries matching " + text.trim() + ":", matches);
+        System.out.println();
+        return true;
+    }
+
+    private static void printNames(String heading, List<NameSearch.Match> matches) {
+        if (matches.isEmpty()) return;
+        System.out.printf("%n%s%n", heading);
+        for (NameSearch.Match match : matches) {
+            System.out.println(match.getName() + " - " + match.getCode());
+        }
+    }
+
     private static String promptForChange(Scanner scanner) {
         boolean done = false;
         String change = "";
@@ -413,7 +1277,7 @@ public class Application {
             }
             if (codeAvailable(code) && code.trim().length() == 3) {
                 System.out.printf("%n%nChanging %s code to %s...%n%n", country.getCode(), code);
-                country.setCode(code);
+                country.setCode(code.trim().toUpperCase());
                 printCountry(country);
                 done = true;
             } else if (code.trim().length() != 3 && !code.equalsIgnoreCase("cancel")) {
@@ -428,106 +1292,81 @@ public class Application {
 
     private static void printCountriesByName() {
         System.out.printf("Here is a list of all the countries:%n%n");
-        List<Country> countries = fetchAllCountries();
-        countries.sort(Comparator.comparing(Country::getName));
-        for (Country name : countries) {
-            System.out.println(name.getName() + " - " + name.getCode());
+        // already in name order, so neither a query nor a sort
+        for (NameSearch.Match match : countryIndex().allByName()) {
+            System.out.println(match.getName() + " - " + match.getCode());
         }
     }
 
-    private static boolean codeAvailable(String code) {
-        List<Country> countries = fetchAllCountries();
-        for (Country c : countries) {
-            if (c.getCode().equalsIgnoreCase(code.trim())) return false;
-        }
-        return true;
+    /*
+     returns the name of the country with that code, or null
+     */
+    static String nameOf(String code) {
+        return countryIndex().findNameByCode(code);
+    }
+
+    static boolean codeAvailable(String code) {
+        if (queuedWrites.isCodeTaken(code)) return false;
+        return queuedWrites.isCodeFreed(code) || !countryIndex().isCodeTaken(code);
     }
 
 
     private static void printCountry(Country country) {
-        if (country.getInternetUsers() != 0.00 && country.getAdultLiteracyRate() != 0.00) {
-            System.out.printf("%n%n Name: %s, Internet Users: %.02f, Literacy: %.02f, Code: %s%n%n",
-                    country.getName(),
-                    round(country.getInternetUsers(), 2),
-                    round(country.getAdultLiteracyRate(), 2),
-                    country.getCode());
-        }
-        if (country.getInternetUsers() == 0.00 && country.getAdultLiteracyRate() != 0.00) {
-            String internetUsers = "--";
-            System.out.printf("%n%n Name: %s, Internet Users: %s, Literacy: %.02f, Code: %s%n%n",
-                    country.getName(),
-                    internetUsers,
-                    round(country.getAdultLiteracyRate(), 2),
-                    country.getCode());
-        }
-        if (country.getInternetUsers() != 0.00 && country.getAdultLiteracyRate() == 0.00) {
-            String literacyRate = "--";
-            System.out.printf("%n%n Name: %s, Internet Users: %.02f, Literacy: %s, Code: %s%n%n",
-                    country.getName(),
-                    round(country.getInternetUsers(), 2),
-                    literacyRate,
-                    country.getCode());
-        }
-        if (country.getInternetUsers() == 0.00 && country.getAdultLiteracyRate() == 0.00) {
-            String internetUsers = "--";
-            String literacyRate = "--";
-            System.out.printf("%n%n Name: %s, Internet Users: %s, Literacy: %s, Code: %s%n%n",
-                    country.getName(),
-                    internetUsers,
-                    literacyRate,
-                    country.getCode());
-        }
+        System.out.printf("%n%n Name: %s, Internet Users: %s, Literacy: %s, Code: %s%n%n",
+                country.getName(),
+                Decimals.fixed2(country.getInternetUsers(), country.getInternetUsers() != 0.00),
+                Decimals.fixed2(country.getAdultLiteracyRate(), country.getAdultLiteracyRate() != 0.00),
+                country.getCode());
     }
 
+    // floating point grammar from the Double.valueOf docs, compiled once
+    private static final String DIGITS = "(\\p{Digit}+)";
+    private static final String HEX_DIGITS = "(\\p{XDigit}+)";
+    // an exponent is 'e' or 'E' followed by an optionally
+    // signed decimal integer.
+    private static final String EXP = "[eE][+-]?"+DIGITS;
+    private static final String FP_REGEX =
+            ("[\\x00-\\x20]*"+ // Optional leading "whitespace"
+                    "[+-]?(" +         // Optional sign character
+                    "NaN|" +           // "NaN" string
+                    "Infinity|" +      // "Infinity" string
+
+                    // A decimal floating-point string representing a finite positive
+                    // number without a leading sign has at most five basic pieces:
+                    // Digits . Digits ExponentPart FloatTypeSuffix
+                    //
+                    // Since this method allows integer-only strings as input
+                    // in addition to strings of floating-point literals, the
+                    // two sub-patterns below are simplifications of the grammar
+                    // productions from the Java Language Specification, 2nd
+                    // edition, section 3.10.2.
+
+                    // Digits ._opt Digits_opt ExponentPart_opt FloatTypeSuffix_opt
+                    "((("+DIGITS+"(\\.)?("+DIGITS+"?)("+EXP+")?)|"+
+
+                    // . Digits ExponentPart_opt FloatTypeSuffix_opt
+                    "(\\.("+DIGITS+")("+EXP+")?)|"+
+
+                    // Hexadecimal strings
+                    "((" +
+                    // 0[xX] HexDigits ._opt BinaryExponent FloatTypeSuffix_opt
+                    "(0[xX]" + HEX_DIGITS + "(\\.)?)|" +
+
+                    // 0[xX] HexDigits_opt . HexDigits BinaryExponent FloatTypeSuffix_opt
+                    "(0[xX]" + HEX_DIGITS + "?(\\.)" + HEX_DIGITS + ")" +
+
+                    ")[pP][+-]?" + DIGITS + "))" +
+                    "[fFdD]?))" +
+                    "[\\x00-\\x20]*");// Optional trailing "whitespace"
+
+    private static final Pattern FLOATING_POINT = Pattern.compile(FP_REGEX);
+
     /*
      takes a string and checks format to see if it can be a double.
      returns true or false.
      */
     private static boolean canBeDouble(String string) {
-        final String Digits     = "(\\p{Digit}+)";
-        final String HexDigits  = "(\\p{XDigit}+)";
-        // an exponent is 'e' or 'E' followed by an optionally
-        // signed decimal integer.
-        final String Exp        = "[eE][+-]?"+Digits;
-        final String fpRegex    =
-                ("[\\x00-\\x20]*"+ // Optional leading "whitespace"
-                        "[+-]?(" +         // Optional sign character
-                        "NaN|" +           // "NaN" string
-                        "Infinity|" +      // "Infinity" string
-
-                        // A decimal floating-point string representing a finite positive
-                        // number without a leading sign has at most five basic pieces:
-                        // Digits . Digits ExponentPart FloatTypeSuffix
-                        //
-                        // Since this method allows integer-only strings as input
-                        // in addition to strings of floating-point literals, the
-                        // two sub-patterns below are simplifications of the grammar
-                        // productions from the Java Language Specification, 2nd
-                        // edition, section 3.10.2.
-
-                        // Digits ._opt Digits_opt ExponentPart_opt FloatTypeSuffix_opt
-                        "((("+Digits+"(\\.)?("+Digits+"?)("+Exp+")?)|"+
-
-                        // . Digits ExponentPart_opt FloatTypeSuffix_opt
-                        "(\\.("+Digits+")("+Exp+")?)|"+
-
-                        // Hexadecimal strings
-                        "((" +
-                        // 0[xX] HexDigits ._opt BinaryExponent FloatTypeSuffix_opt
-                        "(0[xX]" + HexDigits + "(\\.)?)|" +
-
-                        // 0[xX] HexDigits_opt . HexDigits BinaryExponent FloatTypeSuffix_opt
-                        "(0[xX]" + HexDigits + "?(\\.)" + HexDigits + ")" +
-
-                        ")[pP][+-]?" + Digits + "))" +
-                        "[fFdD]?))" +
-                        "[\\x00-\\x20]*");// Optional trailing "whitespace"
-
-            if (Pattern.matches(fpRegex, string)) {
-                return true; // Will not throw NumberFormatException
-            } else {
-                return false;
-        }
+        return FLOATING_POINT.matcher(string).matches(); // Will not throw NumberFormatException
     }
 
     /*
@@ -538,225 +1377,295 @@ public class Application {
         System.out.println("I am sorry, I am not sure what you mean by " + string + ", try again.");
     }
 
-    @SuppressWarnings("unchecked")
     /*
-    takes a list of countries
+    takes a snapshot of countries
     prints a well formatted table
      */
-    private static void displayTable(List<Country> countries) {
-        System.out.format("%-30s%-20s%-20s%n", "Country", "Internet Users", "Literacy");
-        for (int i = 0; i < 80; i++) System.out.print("-");
-        System.out.println();
-        for (Country c : countries) {
-            if (c.getInternetUsers() != 0.00 && c.getAdultLiteracyRate() != 0.00) {
-                System.out.format("%-30s%-20.02f%-20.02f%n",
-                        c.getName(),
-                        round(c.getInternetUsers(), 2),
-                        round(c.getAdultLiteracyRate(), 2));
-            }
-            if (c.getInternetUsers() == 0.00 && c.getAdultLiteracyRate() != 0.00) {
-                String internetUsers = "--";
-                System.out.format("%-30s%-20s%-20.02f%n",
-                        c.getName(),
-                        internetUsers,
-                        round(c.getAdultLiteracyRate(), 2));
-            }
-            if (c.getInternetUsers() != 0.00 && c.getAdultLiteracyRate() == 0.00) {
-                String literacyRate = "--";
-                System.out.format("%-30s%-20.02f%-20s%n",
-                        c.getName(),
-                        round(c.getInternetUsers(), 2),
-                        literacyRate);
-            }
-            if (c.getInternetUsers() == 0.00 && c.getAdultLiteracyRate() == 0.00) {
-                String internetUsers = "--";
-                String literacyRate = "--";
-                System.out.format("%-30s%-20s%-20s%n",
-                        c.getName(),
-                        internetUsers,
-                        literacyRate);
-            }
+    private static void displayTable(CountrySnapshot snapshot) {
+        TableRenderer renderer = TableRenderer.forFormat(DISPLAY_FORMAT, out);
+        renderer.header();
+        for (int i = 0; i < snapshot.size(); i++) {
+            renderer.row(snapshot.getCode(i), snapshot.getName(i),
+                    snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                    snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
         }
+        renderer.finish();
     }
 
-    private static void maxInternet(List<Country> countries) {
-        Country max = countries.stream()
-                .max(Comparator.comparing(Country::getInternetUsers))
-                .get();
-
-        if (max.getAdultLiteracyRate() != 0.00) {
-            System.out.printf("%n%nCountry with the highest Internet Users:%n Name: %s, Internet Users: %.02f, Literacy: %.02f%n%n",
-                    max.getName(),
-                    round(max.getInternetUsers(), 2),
-                    round(max.getAdultLiteracyRate(), 2));
-        } else {
-            System.out.printf("%n%nCountry with the highest Internet Users:%n Name: %s, Internet Users: %.02f, Literacy: %s%n%n",
-                    max.getName(),
-                    round(max.getInternetUsers(), 2),
-                    "--");
+    private static void indicatorStats() {
+        Session session = sessionFactory().openSession();
+        List<String> indicators = IndicatorQuery.listIndicators(session);
+        if (indicators.isEmpty()) {
+            session.close();
+            System.out.printf("%nThere are no indicator values yet. Import a World Bank csv file first.%n%n");
+            return;
         }
+        System.out.printf("%nHere is a list of all the indicators:%n%n");
+        for (String indicator : indicators) {
+            System.out.println(indicator);
+        }
+        String x = promptForIndicator(scanner, indicators, "first");
+        String y = promptForIndicator(scanner, indicators, "second");
+        int firstYear = promptForYear(scanner, "first");
+        int lastYear = promptForYear(scanner, "last", firstYear);
+        int[] years = recordedYears(session, Arrays.asList(x, y), firstYear, lastYear);
+        if (years == null) {
+            session.close();
+            return;
+        }
+        firstYear = years[0];
+        lastYear = years[1];
 
-    }
-
-    private static void notNullMaxInternet(List<Country> countries) {
-        Country max = countries.stream()
-                .filter(country -> country.getInternetUsers() != 0.00 && country.getAdultLiteracyRate() != 0.00)
-                .max(Comparator.comparing(Country::getInternetUsers))
-                .get();
-
-        System.out.printf("%n%nCountry with the highest Internet Users and recorded Literacy Rate:%n Name: %s, Internet Users: %.02f, Literacy: %.02f%n%n",
-                max.getName(),
-                round(max.getInternetUsers(), 2),
-                round(max.getAdultLiteracyRate(), 2));
+        PairStats stats = PairStats.of(
+                IndicatorQuery.loadSeries(session, x, firstYear, lastYear),
+                IndicatorQuery.loadSeries(session, y, firstYear, lastYear),
+                STATS_ERROR);
+        session.close();
 
+        System.out.printf("%n%nStats for %s and %s from %d to %d:%n", x, y, firstYear, lastYear);
+        System.out.printf("%nObservations: %d, with %s: %d, with %s: %d, with both: %d%n",
+                stats.getCount(), x, stats.getXCount(), y, stats.getYCount(), stats.getBothCount());
+        printObservation("Highest " + x, stats.getMaxX(), x, y);
+        printObservation("Highest " + x + " with recorded " + y, stats.getMaxXBoth(), x, y);
+        printObservation("Lowest " + x, stats.getMinX(), x, y);
+        printObservation("Lowest " + x + " with recorded " + y, stats.getMinXBoth(), x, y);
+        printObservation("Highest " + y, stats.getMaxY(), x, y);
+        printObservation("Highest " + y + " with recorded " + x, stats.getMaxYBoth(), x, y);
+        printObservation("Lowest " + y, stats.getMinY(), x, y);
+        printObservation("Lowest " + y + " with recorded " + x, stats.getMinYBoth(), x, y);
+        // any unit and scale, so the bars span what was recorded
+        printDistribution(x, stats.getXDistribution(),
+                stats.getXDistribution().getMin(), stats.getXDistribution().getMax());
+        printDistribution(y, stats.getYDistribution(),
+                stats.getYDistribution().getMin(), stats.getYDistribution().getMax());
+        double r = stats.getCorrelation().coefficient();
+        System.out.printf("%nCorrelation Coefficient (%s & %s): %s%n%n",
+                x, y, Double.isNaN(r) ? "--" : String.valueOf(round(r, 2)));
     }
 
-    private static void minInternet(List<Country> countries) {
-        Country minCountry = countries.stream()
-                .filter(country -> country.getInternetUsers() != 0.00)
-                .min(Comparator.comparing(Country::getInternetUsers))
-                .get();
+    private static void correlationMatrix() {
+        Session session = sessionFactory().openSession();
+        List<String> indicators = IndicatorQuery.listIndicators(session);
+        session.close();
+        if (indicators.isEmpty()) {
+            System.out.printf("%nThere are no indicator values yet. Import a World Bank csv file first.%n%n");
+            return;
+        }
+        System.out.printf("%nHere is a list of all the indicators:%n%n");
+        for (String indicator : indicators) {
+            System.out.println(indicator);
+        }
+        System.out.printf("%nPlease provide the indicator codes separated by spaces, or all: %n");
+        String line = scanner.nextLine().trim();
+        List<String> wanted = line.isEmpty() || line.equalsIgnoreCase("all")
+                ? Collections.<String>emptyList()
+                : Arrays.asList(line.split("[\\s,]+"));
+        int firstYear = promptForYear(scanner, "first");
+        int lastYear = promptForYear(scanner, "last", firstYear);
+        correlationMatrix(wanted, firstYear, lastYear);
+    }
 
-        if (minCountry.getAdultLiteracyRate() != 0.00) {
-            System.out.printf("%n%nCountry with the lowest Internet Users:%n Name: %s, Internet Users: %.02f, Literacy: %.02f%n%n",
-                    minCountry.getName(),
-                    round(minCountry.getInternetUsers(), 2),
-                    round(minCountry.getAdultLiteracyRate(), 2));
-        } else {
-            System.out.printf("%n%nCountry with the lowest Internet Users:%n Name: %s, Internet Users: %.02f, Literacy: %s%n%n",
-                    minCountry.getName(),
-                    round(minCountry.getInternetUsers(), 2),
-                    "--");
+    /*
+    takes indicator codes, none meaning all of them, and a span of years
+    prints the coefficient of every pair, over the part of the span with values
+    returns false when an indicator is not known or the span has no values
+     */
+    static boolean correlationMatrix(List<String> wanted, int firstYear, int lastYear) {
+        Session session = sessionFactory().openSession();
+        List<IndicatorSeries> series = new ArrayList<>();
+        try {
+            List<String> known = IndicatorQuery.listIndicators(session);
+            List<String> indicators = new ArrayList<>();
+            for (String indicator : wanted.isEmpty() ? known : wanted) {
+                String match = null;
+                for (String k : known) {
+                    if (k.equalsIgnoreCase(indicator)) match = k;
+                }
+                if (match == null) {
+                    System.out.printf("%nI am sorry, there is no indicator %s.%n%n", indicator);
+                    return false;
+                }
+                if (!indicators.contains(match)) indicators.add(match);
+            }
+            if (indicators.isEmpty()) {
+                System.out.printf("%nThere are no indicator values yet. Import a World Bank csv file first.%n%n");
+                return false;
+            }
+            int[] years = recordedYears(session, indicators, firstYear, lastYear);
+            if (years == null) return false;
+            firstYear = years[0];
+            lastYear = years[1];
+            long start = System.nanoTime();
+            for (String indicator : indicators) {
+                series.add(IndicatorQuery.loadSeries(session, indicator, firstYear, lastYear));
+            }
+            metrics.record("db loadSeries", start);
+        } finally {
+            session.close();
         }
 
+        CorrelationMatrix matrix = metrics.time("correlation matrix", () -> CorrelationMatrix.of(series));
+        System.out.printf("%n%nCorrelation Coefficients from %d to %d, each pair over the years and countries " +
+                "where both were recorded:%n%n", firstYear, lastYear);
+        StringBuilder sb = new StringBuilder(64 + matrix.size() * 8);
+        sb.append(String.format("%4s %-24s", "", ""));
+        for (int j = 0; j < matrix.size(); j++) {
+            sb.append(String.format(" %6d", j + 1));
+        }
+        System.out.println(sb);
+        for (int i = 0; i < matrix.size(); i++) {
+            sb.setLength(0);
+            sb.append(String.format("%4d %-24s", i + 1, matrix.getIndicators().get(i)));
+            for (int j = 0; j < matrix.size(); j++) {
+                double r = matrix.coefficient(i, j);
+                sb.append(' ');
+                String value = Double.isNaN(r) ? Decimals.MISSING : Decimals.fixed2(r, true);
+                for (int pad = value.length(); pad < 6; pad++) sb.append(' ');
+                sb.append(value);
+            }
+            System.out.println(sb);
+        }
+        System.out.println();
+        return true;
     }
 
-    private static void notNullMinInternet(List<Country> countries) {
-        Country minCountry = countries.stream()
-                .filter(country -> country.getAdultLiteracyRate() != 0.00 && country.getInternetUsers() != 0.00)
-                .min(Comparator.comparing(Country::getInternetUsers))
-                .get();
-
-        System.out.printf("%n%nCountry with the lowest Internet Users and recorded Literacy Rate:%n Name: %s, Internet Users: %.02f, Literacy: %.02f%n%n",
-                minCountry.getName(),
-                round(minCountry.getInternetUsers(), 2),
-                round(minCountry.getAdultLiteracyRate(), 2));
+    private static String promptForIndicator(Scanner scanner, List<String> indicators, String which) {
+        do {
+            System.out.printf("%nPlease provide the %s indicator code: %n", which);
+            String indicator = scanner.nextLine().trim();
+            for (String known : indicators) {
+                if (known.equalsIgnoreCase(indicator)) return known;
+            }
+            tryAgain(indicator);
+        } while (true);
+    }
 
+    private static int promptForYear(Scanner scanner, String which) {
+        return promptForYear(scanner, which, Integer.MIN_VALUE);
     }
 
-    private static void maxLiteracy(List<Country> countries) {
-        Country maxCountry = countries.stream()
-                .max(Comparator.comparing(Country::getAdultLiteracyRate))
-                .get();
+    /*
+    takes the earliest year to accept
+     */
+    private static int promptForYear(Scanner scanner, String which, int earliest) {
+        do {
+            System.out.printf("%nPlease provide the %s year: %n", which);
+            String year = scanner.nextLine().trim();
+            try {
+                int value = Integer.parseInt(year);
+                if (value >= earliest) return value;
+                System.out.printf("I am sorry, the %s year cannot be before %d, try again.%n", which, earliest);
+            } catch (NumberFormatException e) {
+                tryAgain(year);
+            }
+        } while (true);
+    }
 
-        if (maxCountry.getInternetUsers() != 0.00) {
-            System.out.printf("%n%nCountry with the highest Literacy Rate:%n Name: %s, Literacy Rate: %.02f, Internet Users: %.02f%n%n",
-                    maxCountry.getName(),
-                    round(maxCountry.getAdultLiteracyRate(), 2),
-                    round(maxCountry.getAdultLiteracyRate(), 2));
-        } else {
-            System.out.printf("%n%nCountry with the highest Literacy Rate:%n Name: %s, Literacy Rate: %.02f, Internet Users: %s%n%n",
-                    maxCountry.getName(),
-                    round(maxCountry.getAdultLiteracyRate(), 2),
-                    "--");
+    /*
+    takes indicator codes and the span of years asked for
+    returns the part of the span that has values for them, so no series
+    holds slots for years the table has nothing in, or null after saying
+    why there is none
+     */
+    private static int[] recordedYears(Session session, Collection<String> indicators, int firstYear, int lastYear) {
+        if (firstYear > lastYear) {
+            System.out.printf("%nI am sorry, the first year %d is after the last year %d.%n%n", firstYear, lastYear);
+            return null;
         }
-
+        int[] recorded = IndicatorQuery.yearRange(session, indicators);
+        if (recorded == null || recorded[0] > lastYear || recorded[1] < firstYear) {
+            System.out.printf("%nThere are no values from %d to %d.%n%n", firstYear, lastYear);
+            return null;
+        }
+        return new int[]{Math.max(firstYear, recorded[0]), Math.min(lastYear, recorded[1])};
     }
 
-    private static void notNullmaxLiteracy(List<Country> countries) {
-        Country maxCountry = countries.stream()
-                .filter(country -> country.getInternetUsers() != 0.00 && country.getAdultLiteracyRate() != 0.00)
-                .max(Comparator.comparing(Country::getAdultLiteracyRate))
-                .get();
+    private static void printObservation(String title, PairStats.Observation o, String x, String y) {
+        if (o == null) {
+            System.out.printf("%n%s:%n --%n", title);
+            return;
+        }
+        System.out.printf("%n%s:%n Country: %s, Year: %d, %s: %s, %s: %s%n",
+                title,
+                o.getCountry(),
+                o.getYear(),
+                x,
+                Decimals.fixed2(o.getX(), o.hasX()),
+                y,
+                Decimals.fixed2(o.getY(), o.hasY()));
+    }
 
-        System.out.printf("%n%nCountry with the highest Literacy Rate and recorded Internet Users:%n Name: %s, Literacy Rate: %.02f, Internet Users: %.02f%n%n",
-                maxCountry.getName(),
-                round(maxCountry.getAdultLiteracyRate(), 2),
-                round(maxCountry.getAdultLiteracyRate(), 2));
+    private static void printInternetExtreme(String title, Extreme e) {
+        if (e == null) {
+            System.out.printf("%n%n%s:%n --%n%n", title);
+            return;
+        }
+        System.out.printf("%n%n%s:%n Name: %s, Internet Users: %s, Literacy: %s%n%n",
+                title,
+                e.getName(),
+                Decimals.fixed2(e.getInternetUsers(), true),
+                Decimals.fixed2(e.getAdultLiteracyRate(), e.hasAdultLiteracyRate()));
+    }
 
+    private static void printLiteracyExtreme(String title, Extreme e) {
+        if (e == null) {
+            System.out.printf("%n%n%s:%n --%n%n", title);
+            return;
+        }
+        System.out.printf("%n%n%s:%n Name: %s, Literacy Rate: %s, Internet Users: %s%n%n",
+                title,
+                e.getName(),
+                Decimals.fixed2(e.getAdultLiteracyRate(), true),
+                Decimals.fixed2(e.getInternetUsers(), e.hasInternetUsers()));
     }
 
-    private static void minLiteracy(List<Country> countries) {
-        Country minCountry = countries.stream()
-                .filter(country -> country.getAdultLiteracyRate() != 0.00)
-                .min(Comparator.comparing(Country::getAdultLiteracyRate))
-                .get();
+    /*
+    takes what the values are, their distribution and the range the histogram covers
+    prints the percentiles and a histogram of HISTOGRAM_BINS bars
+     */
+    private static void printDistribution(String title, Distribution distribution, double low, double high) {
+        if (distribution == null || distribution.getCount() == 0) {
+            System.out.printf("%n%nPercentiles of %s:%n --%n%n", title);
+            return;
+        }
+        double[] q = distribution.getQuantiles(0.10, 0.50, 0.90, 0.99);
+        System.out.printf("%n%nPercentiles of %s (%d values, %s):%n" +
+                        " p10: %s, median: %s, p90: %s, p99: %s%n%n",
+                title,
+                distribution.getCount(),
+                distribution.getRankError() == 0 ? "exact"
+                        : String.format("ranks within %.1f%%", distribution.getRankError() * 100),
+                Decimals.fixed2(q[0], true),
+                Decimals.fixed2(q[1], true),
+                Decimals.fixed2(q[2], true),
+                Decimals.fixed2(q[3], true));
+        long[] counts = distribution.histogram(low, high, HISTOGRAM_BINS);
+        long most = 1;
+        for (long count : counts) most = Math.max(most, count);
+        double width = (high - low) / HISTOGRAM_BINS;
+        StringBuilder bar = new StringBuilder(64);
+        for (int i = 0; i < counts.length; i++) {
+            bar.setLength(0);
+            for (long j = counts[i] * 40 / most; j > 0; j--) bar.append('#');
+            System.out.printf(" %10s - %10s | %-40s %d%n",
+                    Decimals.fixed2(low + i * width, true),
+                    Decimals.fixed2(i == counts.length - 1 ? high : low + (i + 1) * width, true),
+                    bar,
+                    counts[i]);
+        }
+    }
 
-        if (minCountry.getInternetUsers() != 0.00) {
-            System.out.printf("%n%nCountry with the lowest Literacy Rate:%n Name: %s, Literacy Rate: %.02f, Internet Users: %.02f%n%n",
-                    minCountry.getName(),
-                    round(minCountry.getAdultLiteracyRate(), 2),
-                    round(minCountry.getAdultLiteracyRate(), 2));
-        } else {
-            System.out.printf("%n%nCountry with the lowest Literacy Rate:%n Name: %s, Literacy Rate: %.02f, Internet Users: %s%n%n",
-                    minCountry.getName(),
-                    round(minCountry.getAdultLiteracyRate(), 2),
-                    "--");
-        }
-
-    }
-
-    private static void notNullminLiteracy(List<Country> countries) {
-        Country minCountry = countries.stream()
-                .filter(country -> country.getAdultLiteracyRate() != 0.00 && country.getInternetUsers() != 0.00)
-                .min(Comparator.comparing(Country::getAdultLiteracyRate))
-                .get();
-
-        System.out.printf("%n%nCountry with the lowest Literacy Rate and recorded Internet Users:%n Name:%s, Literacy Rate: %.02f, Internet Users: %.02f%n%n",
-                minCountry.getName(),
-                round(minCountry.getAdultLiteracyRate(), 2),
-                round(minCountry.getAdultLiteracyRate(), 2));
-
-    }
-
-    private static void corrCoef() {
-        List<Country> noNullCountries = new ArrayList<>();
-
-        for (Country c : fetchAllCountries()) {
-            if (c.getInternetUsers() != 0.00 && c.getAdultLiteracyRate() != 0.00) noNullCountries.add(c);
-        }
-        double r,nr=0,dr_1=0,dr_2=0,dr_3=0,dr=0;
-        double xx[], xy[], yy[];
-        xx = new double[noNullCountries.size()];
-        xy = new double[noNullCountries.size()];
-        yy = new double[noNullCountries.size()];
-        double x[], y[];
-        x = new double[noNullCountries.size()];
-        y = new double[noNullCountries.size()];
-        double sum_y=0,sum_yy=0,sum_xy=0,sum_x=0,sum_xx=0;
-        int i,n=noNullCountries.size();
-        for (Country c : noNullCountries) {
-            x[noNullCountries.indexOf(c)]= c.getInternetUsers();
-            y[noNullCountries.indexOf(c)]= c.getAdultLiteracyRate();
-        }
-        for (i = 0; i < n; i++) {
-            xx[i]=x[i]*x[i];
-            yy[i]=y[i]*y[i];
-        }
-        for(i=0;i<n;i++) {
-            sum_x+=x[i];
-            sum_y+=y[i];
-            sum_xx+= xx[i];
-            sum_yy+=yy[i];
-            sum_xy+= x[i]*y[i];
-        }
-        nr=(n*sum_xy)-(sum_x*sum_y);
-        double sum_x2=sum_x*sum_x;
-        double sum_y2=sum_y*sum_y;
-        dr_1=(n*sum_xx)-sum_x2;
-        dr_2=(n*sum_yy)-sum_y2;
-        dr_3=dr_1*dr_2;
-        dr=Math.sqrt(dr_3);
-        r=(nr/dr);
-        String s = String.format("%.2f",r);
-        r = Double.parseDouble(s);
-        System.out.println("\n\nTotal Number of Countries in database: "+n+"\nCorrelation Coefficient (Internet Users & Literacy Rates): "+r+"\n\n");
+    private static void corrCoef(Correlation correlation) {
+        double r = correlation.coefficient();
+        System.out.println("\n\nTotal Number of Countries in database: " + correlation.getCount()
+                + "\nCorrelation Coefficient (Internet Users & Literacy Rates): "
+                + (Double.isNaN(r) ? "--" : String.valueOf(round(r, 2))) + "\n\n");
     }
 
     private static double round(double value, int places) {
-        if (places < 0) throw new IllegalArgumentException();
+        if (places < 0 || places >= POWERS_OF_TEN.length) throw new IllegalArgumentException();
 
-        long factor = (long) Math.pow(10, places);
+        long factor = POWERS_OF_TEN[places];
         value = value * factor;
         long tmp = Math.round(value);
         return (double) tmp / factor;
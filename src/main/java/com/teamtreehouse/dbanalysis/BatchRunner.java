@@ -0,0 +1,474 @@
+package com.teamtreehouse.dbanalysis;
+
+import com.teamtreehouse.dbanalysis.data.Csv;
+import com.teamtreehouse.dbanalysis.data.WriteBehind;
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.Country.CountryBuilder;
+import com.teamtreehouse.dbanalysis.model.CountryIndicator;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ runs commands from a script without showing any menus, one per line:
+
+   display
+   stats
+   verify
+   metrics
+   matrix FIRST_YEAR LAST_YEAR [INDICATOR ...]
+   add CODE NAME INTERNET_USERS LITERACY_RATE
+   update CODE name|internet|literacy VALUE
+   delete CODE
+   import FILE
+   snapshot export|stats|display FILE
+   export countries|values|INDICATOR csv|jsonl FILE[.gz]
+   top|bottom internet|literacy K [SNAPSHOT_FILE]
+   range internet|literacy LOW HIGH [SNAPSHOT_FILE]
+   search TEXT
+   quit
+
+ names with spaces go in double quotes, blank lines and lines starting
+ with # are skipped. consecutive add, update and delete commands share
+ one transaction, committed before the next other command or at the end.
+ with -Dworldbank.writebehind=true they go on the write-behind queue
+ instead, which is flushed at those same points.
+ the time each command took is written to stderr so stdout stays clean.
+ */
+class BatchRunner {
+    private final BufferedReader reader;
+    private final PrintStream log = System.err;
+
+    // the write group that is still open
+    private Session session;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<String> groupCommands = new ArrayList<>();
+    private final Set<String> groupCodes = new HashSet<>();
+    private final Set<String> groupNames = new HashSet<>();
+    private final Set<String> groupDeletedCodes = new HashSet<>();
+    private final Set<String> groupDeletedNames = new HashSet<>();
+    // the name each code was given in this group, which the index does not know yet
+    private final Map<String, String> groupNameOf = new HashMap<>();
+
+    // the write-behind queue when it is on, failures it had before this group
+    private WriteBehind queue;
+    private long queueFailures;
+
+    private int commands;
+    private int failures;
+
+    BatchRunner(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /*
+     runs every command
+     returns the number of commands that failed
+     */
+    int run() throws IOException {
+        long start = System.nanoTime();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+            List<String> tokens = tokens(trimmed);
+            String command = tokens.get(0).toLowerCase();
+            if (command.equals("quit")) break;
+
+            boolean write = command.equals("add") || command.equals("update") || command.equals("delete");
+            if (!write) commit();
+
+            long commandStart = System.nanoTime();
+            commands++;
+            String error;
+            try {
+                error = execute(command, tokens);
+            } catch (HibernateException e) {
+                error = e.getMessage();
+                rollback();
+            }
+            if (error != null) {
+                failures++;
+                log.printf("line %d: %s: %s%n", lineNumber, trimmed, error);
+            } else {
+                if (write) groupCommands.add(trimmed);
+                Application.getMetrics().record("batch " + command, commandStart);
+                log.printf("%10.2f ms  %s%n", millisSince(commandStart), trimmed);
+            }
+        }
+        commit();
+        log.printf("%d commands, %d failed, %.2f ms%n", commands, failures, millisSince(start));
+        return failures;
+    }
+
+    /*
+     returns null when the command worked, otherwise what went wrong
+     */
+    private String execute(String command, List<String> tokens) {
+        switch (command) {
+            case "display":
+                Application.display();
+                return null;
+            case "stats":
+                Application.stats();
+                return null;
+            case "metrics":
+                Application.printMetrics();
+                return null;
+            case "verify":
+                return Application.verifyStats() ? null : "running stats did not match";
+            case "matrix":
+                return matrix(tokens);
+            case "import":
+                if (tokens.size() != 2) return "expected: import FILE";
+                return Application.importFile(Paths.get(tokens.get(1))) ? null : "import failed";
+            case "search":
+                if (tokens.size() != 2) return "expected: search TEXT";
+                return Application.search(tokens.get(1)) ? null : "no match";
+            case "top":
+            case "bottom":
+                return top(tokens);
+            case "range":
+                return range(tokens);
+            case "snapshot":
+                if (tokens.size() != 3) return "expected: snapshot export|stats|display FILE";
+                return Application.snapshot(tokens.get(1).toLowerCase(), Paths.get(tokens.get(2)))
+                        ? null : "snapshot failed";
+            case "export":
+                if (tokens.size() != 4) return "expected: export countries|values|INDICATOR csv|jsonl FILE[.gz]";
+                return Application.export(tokens.get(1), tokens.get(2).toLowerCase(), Paths.get(tokens.get(3)))
+                        ? null : "export failed";
+            case "add":
+                return add(tokens);
+            case "update":
+                return update(tokens);
+            case "delete":
+                return delete(tokens);
+            default:
+                return "unknown command";
+        }
+    }
+
+    private String matrix(List<String> tokens) {
+        if (tokens.size() < 3) return "expected: matrix FIRST_YEAR LAST_YEAR [INDICATOR ...]";
+        int firstYear;
+        int lastYear;
+        try {
+            firstYear = Integer.parseInt(tokens.get(1));
+            lastYear = Integer.parseInt(tokens.get(2));
+        } catch (NumberFormatException e) {
+            return "years must be whole numbers";
+        }
+        if (firstYear > lastYear) return "the first year is after the last year";
+        return Application.correlationMatrix(tokens.subList(3, tokens.size()), firstYear, lastYear) ? null : "no matrix";
+    }
+
+    private String top(List<String> tokens) {
+        if (tokens.size() != 3 && tokens.size() != 4) {
+            return "expected: " + tokens.get(0) + " internet|literacy K [SNAPSHOT_FILE]";
+        }
+        CountryIndicator indicator = CountryIndicator.parse(tokens.get(1));
+        if (indicator == null) return "indicator must be internet or literacy";
+        int k;
+        try {
+            k = Integer.parseInt(tokens.get(2));
+        } catch (NumberFormatException e) {
+            return "K must be a whole number";
+        }
+        if (k < 1) return "K must be at least 1";
+        Path file = tokens.size() == 4 ? Paths.get(tokens.get(3)) : null;
+        return Application.top(indicator, k, tokens.get(0).equalsIgnoreCase("top"), file) ? null : "no ranking";
+    }
+
+    private String range(List<String> tokens) {
+        if (tokens.size() != 4 && tokens.size() != 5) {
+            return "expected: range internet|literacy LOW HIGH [SNAPSHOT_FILE]";
+        }
+        CountryIndicator indicator = CountryIndicator.parse(tokens.get(1));
+        if (indicator == null) return "indicator must be internet or literacy";
+        Double low = Csv.parseDouble(tokens.get(2));
+        Double high = Csv.parseDouble(tokens.get(3));
+        if (low == null || high == null) return "LOW and HIGH must be numbers";
+        Path file = tokens.size() == 5 ? Paths.get(tokens.get(4)) : null;
+        return Application.range(indicator, Math.min(low, high), Math.max(low, high), file) ? null : "no range";
+    }
+
+    private String add(List<String> tokens) {
+        if (tokens.size() != 5) return "expected: add CODE NAME INTERNET_USERS LITERACY_RATE";
+        // codes are kept in upper case, like the interactive add, so update and delete find them
+        String code = tokens.get(1).toUpperCase();
+        String name = tokens.get(2);
+        Double internetUsers = Csv.parseDouble(tokens.get(3));
+        Double literacyRate = Csv.parseDouble(tokens.get(4));
+        if (code.length() != Country.CODE_LENGTH) return "code must be three characters";
+        if (name.isEmpty() || name.length() > Country.NAME_LENGTH) return "name must be 1 to 32 characters";
+        if (internetUsers == null || literacyRate == null) return "values must be numbers, 0.00 if not known";
+        if (!codeAvailable(code)) return code + " is already taken";
+        if (!nameAvailable(name)) return name + " is already taken";
+
+        Country country = new CountryBuilder(code, name)
+                .withInternetUsers(internetUsers)
+                .withAdultLiteracyRate(literacyRate)
+                .build();
+        groupCodes.add(key(code));
+        groupNames.add(key(name));
+        groupNameOf.put(key(code), name);
+        if (queue() != null) {
+            queue.save(country);
+            return null;
+        }
+        openGroup();
+        session.save(country);
+        afterCommit.add(() -> Application.saved(country));
+        return null;
+    }
+
+    private String update(List<String> tokens) {
+        if (tokens.size() != 4) return "expected: update CODE name|internet|literacy VALUE";
+        String field = tokens.get(2).toLowerCase();
+        String value = tokens.get(3);
+        Double number = Csv.parseDouble(value);
+        if (field.equals("name")) {
+            if (value.isEmpty() || value.length() > Country.NAME_LENGTH) return "name must be 1 to 32 characters";
+            if (!nameAvailable(value)) return value + " is already taken";
+        } else if (field.equals("internet") || field.equals("literacy")) {
+            if (number == null) return "value must be a number";
+        } else {
+            return "field must be name, internet or literacy";
+        }
+
+        if (queue() != null) {
+            String code = tokens.get(1).toUpperCase();
+            if (!exists(code)) return "no country with code " + tokens.get(1);
+            if (field.equals("name")) renamed(code, nameOf(code), value);
+            queue.update(code, country -> change(country, field, value, number));
+            return null;
+        }
+        openGroup();
+        Country country = session.get(Country.class, tokens.get(1).toUpperCase());
+        if (country == null) return "no country with code " + tokens.get(1);
+        String code = country.getCode();
+        String previousName = country.getName();
+        change(country, field, value, number);
+        if (field.equals("name")) renamed(code, previousName, value);
+        afterCommit.add(() -> Application.updated(code, country));
+        return null;
+    }
+
+    /*
+     frees the old name for the rest of the group and takes the new one
+     */
+    private void renamed(String code, String previousName, String name) {
+        if (previousName != null) {
+            groupNames.remove(key(previousName));
+            groupDeletedNames.add(key(previousName));
+        }
+        groupNames.add(key(name));
+        groupNameOf.put(key(code), name);
+    }
+
+    private static void change(Country country, String field, String value, Double number) {
+        switch (field) {
+            case "name":
+                country.setName(value);
+                break;
+            case "internet":
+                country.setInternetUsers(number);
+                break;
+            default:
+                country.setAdultLiteracyRate(number);
+        }
+    }
+
+    private String delete(List<String> tokens) {
+        if (tokens.size() != 2) return "expected: delete CODE";
+        if (queue() != null) {
+            String code = tokens.get(1).toUpperCase();
+            if (!exists(code)) return "no country with code " + tokens.get(1);
+            String name = nameOf(code);
+            queue.delete(code);
+            groupCodes.remove(key(code));
+            groupDeletedCodes.add(key(code));
+            groupNameOf.remove(key(code));
+            if (name != null) {
+                groupNames.remove(key(name));
+                groupDeletedNames.add(key(name));
+            }
+            return null;
+        }
+        openGroup();
+        Country country = session.get(Country.class, tokens.get(1).toUpperCase());
+        if (country == null) return "no country with code " + tokens.get(1);
+        session.delete(country);
+        // flush now so a later add of the same code in this group does not collide
+        session.flush();
+        String code = country.getCode();
+        int version = country.getVersion();
+        groupCodes.remove(key(code));
+        groupNames.remove(key(country.getName()));
+        groupDeletedCodes.add(key(code));
+        groupDeletedNames.add(key(country.getName()));
+        groupNameOf.remove(key(code));
+        afterCommit.add(() -> Application.deleted(code, version));
+        return null;
+    }
+
+    /*
+     whether a country with that code will be there once the queued writes are in
+     */
+    private boolean exists(String code) {
+        return groupCodes.contains(key(code))
+                || (!Application.codeAvailable(code) && !groupDeletedCodes.contains(key(code)));
+    }
+
+    /*
+     returns the name the country with that code will have once the queued writes are in
+     */
+    private String nameOf(String code) {
+        String name = groupNameOf.get(key(code));
+        return name != null ? name : Application.nameOf(code);
+    }
+
+    private WriteBehind queue() {
+        if (queue == null) queue = Application.writeBehind();
+        return queue;
+    }
+
+    private boolean codeAvailable(String code) {
+        return (Application.codeAvailable(code) || groupDeletedCodes.contains(key(code)))
+                && !groupCodes.contains(key(code));
+    }
+
+    private boolean nameAvailable(String name) {
+        return (Application.nameAvailable(name) || groupDeletedNames.contains(key(name)))
+                && !groupNames.contains(key(name));
+    }
+
+    private void openGroup() {
+        if (session == null) {
+            session = Application.getSessionFactory().openSession();
+            session.beginTransaction();
+        }
+    }
+
+    private void commit() {
+        if (queue != null && !groupCommands.isEmpty()) {
+            flushQueue();
+            return;
+        }
+        if (session == null) return;
+        long start = System.nanoTime();
+        int writes = groupCommands.size();
+        try {
+            session.getTransaction().commit();
+            session.close();
+            session = null;
+            for (Runnable hook : afterCommit) {
+                hook.run();
+            }
+            Application.getMetrics().record("batch commit", start);
+            log.printf("%10.2f ms  commit of %d writes%n", millisSince(start), writes);
+        } catch (HibernateException e) {
+            log.printf("commit of %d writes failed: %s%n", writes, e.getMessage());
+            rollback();
+        }
+        clearGroup();
+    }
+
+    /*
+     waits for the group's queued writes and counts the ones that failed
+     */
+    private void flushQueue() {
+        long start = System.nanoTime();
+        int writes = groupCommands.size();
+        Application.flushWrites();
+        long failed = queue.getFailures() - queueFailures;
+        queueFailures = queue.getFailures();
+        failures += failed;
+        Application.getMetrics().record("batch commit", start);
+        log.printf("%10.2f ms  commit of %d writes%s%n", millisSince(start), writes,
+                failed == 0 ? "" : ", " + failed + " failed");
+        clearGroup();
+    }
+
+    /*
+     drops the open group, its writes already logged as done are counted as failed
+     */
+    private void rollback() {
+        if (session == null) return;
+        try {
+            if (session.getTransaction().getStatus().canRollback()) {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            session.close();
+            session = null;
+            failures += groupCommands.size();
+            for (String command : groupCommands) {
+                log.printf("rolled back: %s%n", command);
+            }
+            clearGroup();
+        }
+    }
+
+    private void clearGroup() {
+        afterCommit.clear();
+        groupCommands.clear();
+        groupCodes.clear();
+        groupNames.clear();
+        groupDeletedCodes.clear();
+        groupDeletedNames.clear();
+        groupNameOf.clear();
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase();
+    }
+
+    private static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /*
+     takes a command line
+     returns its words, keeping double quoted text together
+     */
+    static List<String> tokens(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(ch) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(ch);
+                inToken = true;
+            }
+        }
+        if (inToken) tokens.add(token.toString());
+        return tokens;
+    }
+}
@@ -0,0 +1,281 @@
+package com.teamtreehouse.dbanalysis;
+
+import com.teamtreehouse.dbanalysis.data.CountryPager;
+import com.teamtreehouse.dbanalysis.data.CountryWriter;
+import com.teamtreehouse.dbanalysis.data.SnapshotHolder;
+import com.teamtreehouse.dbanalysis.data.StatsQuery;
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ replays a mixed workload against the database at a fixed rate and
+ reports throughput and latency percentiles per kind of request:
+
+   java ... com.teamtreehouse.dbanalysis.LoadDriver
+        [--rate N] [--seconds N] [--threads N] [--seed S]
+        [--mix read=70,stats=5,scan=5,write=20] [--source database|snapshot]
+
+   read   one country by code
+   stats  the stats screen, computed in the database
+   scan   the whole table a page at a time through CountryPager, the
+          display reads the snapshot instead
+   write  one country's internet users changed through CountryWriter
+
+ with --source snapshot the reads are answered from the shared
+ SnapshotHolder instead, stats and scans over one version of it, and
+ every write publishes a new version, as the write hooks do.
+
+ request i is due at start + i / rate. latency is measured from when
+ it was due, not from when a thread got to it, so a slow stretch shows
+ up in the percentiles instead of quietly lowering the rate. the order
+ of requests and the countries they touch come from the seed.
+
+ point it at a generated database with -Dworldbank.db=./data/synthetic
+ (see DatasetGenerator) to see how the app behaves at scale.
+ */
+class LoadDriver {
+    private static final String[] OPERATIONS = {"read", "stats", "scan", "write"};
+    private static final int READ = 0;
+    private static final int STATS = 1;
+    private static final int SCAN = 2;
+    private static final int WRITE = 3;
+
+    private int rate = 200;
+    private int seconds = 30;
+    private int threads = 16;
+    private long seed = 42;
+    private final int[] weights = {70, 5, 5, 20};
+    private boolean fromSnapshot;
+
+    private SessionFactory sessionFactory;
+    private CountryWriter writer;
+    private SnapshotHolder snapshots;
+    private String[] codes;
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadDriver driver = new LoadDriver();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            driver.set(args[i], args[i + 1]);
+        }
+        boolean failed;
+        try {
+            failed = driver.run();
+        } finally {
+            Application.getSessionFactory().close();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private void set(String option, String value) {
+        switch (option) {
+            case "--rate":
+                rate = Integer.parseInt(value);
+                break;
+            case "--seconds":
+                seconds = Integer.parseInt(value);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--source":
+                if (!value.equals("database") && !value.equals("snapshot")) {
+                    throw new IllegalArgumentException("--source is database or snapshot");
+                }
+                fromSnapshot = value.equals("snapshot");
+                break;
+            case "--mix":
+                Arrays.fill(weights, 0);
+                for (String part : value.split(",")) {
+                    String[] pair = part.split("=");
+                    int operation = Arrays.asList(OPERATIONS).indexOf(pair[0].trim());
+                    if (operation < 0 || pair.length != 2) throw new IllegalArgumentException("bad mix " + part);
+                    weights[operation] = Integer.parseInt(pair[1].trim());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + option);
+        }
+        if (rate < 1 || seconds < 1 || threads < 1) throw new IllegalArgumentException(option + " must be positive");
+    }
+
+    /*
+     returns true when any request failed
+     */
+    private boolean run() throws InterruptedException {
+        sessionFactory = Application.getSessionFactory();
+        writer = new CountryWriter(sessionFactory, 10);
+        codes = loadCodes();
+        if (codes.length == 0) throw new IllegalStateException("the Country table is empty");
+        if (fromSnapshot) {
+            snapshots = Application.getSnapshots();
+            // loaded before the clock starts, like the database has its pages cached
+            snapshots.get();
+        }
+
+        // the whole schedule up front, so it depends only on the seed
+        int total = (int) Math.min(Integer.MAX_VALUE, (long) rate * seconds);
+        byte[] operations = new byte[total];
+        int[] targets = new int[total];
+        int weightSum = 0;
+        for (int weight : weights) weightSum += weight;
+        if (weightSum == 0) throw new IllegalArgumentException("the mix is empty");
+        Random random = new Random(seed);
+        for (int i = 0; i < total; i++) {
+            int pick = random.nextInt(weightSum);
+            int operation = 0;
+            while (pick >= weights[operation]) pick -= weights[operation++];
+            operations[i] = (byte) operation;
+            targets[i] = random.nextInt(codes.length);
+        }
+
+        Latencies[] latencies = new Latencies[OPERATIONS.length];
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new Latencies(total / 4 + 16);
+        AtomicLong next = new AtomicLong();
+        long intervalNanos = 1_000_000_000L / rate;
+        long start = System.nanoTime() + 10_000_000;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long i;
+                while ((i = next.getAndIncrement()) < total) {
+                    long due = start + i * intervalNanos;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                    int operation = operations[(int) i];
+                    boolean ok = execute(operation, (int) i, codes[targets[(int) i]]);
+                    latencies[operation].record(System.nanoTime() - due, ok);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.printf("%n%d requests in %.1f s: %.0f requests/s against a target of %d, %d threads, %d countries, " +
+                        "reads from the %s%n%n",
+                total, elapsed, total / elapsed, rate, threads, codes.length, fromSnapshot ? "snapshot" : "database");
+        System.out.printf("%-6s %8s %7s %10s %10s %10s %10s %10s%n",
+                "", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long errors = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            Latencies l = latencies[i];
+            errors += l.errors;
+            if (l.count == 0) continue;
+            long[] sorted = l.sorted();
+            System.out.printf("%-6s %8d %7d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    OPERATIONS[i], l.count, l.errors,
+                    millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1_000_000.0);
+        }
+        System.out.printf("%nwrite conflicts retried: %d%n", writer.getConflicts());
+        return errors > 0;
+    }
+
+    private boolean execute(int operation, int request, String code) {
+        try {
+            if (fromSnapshot && operation != WRITE) {
+                readSnapshot(operation, code);
+                return true;
+            }
+            switch (operation) {
+                case READ:
+                    Session session = sessionFactory.openSession();
+                    try {
+                        session.get(Country.class, code);
+                    } finally {
+                        session.close();
+                    }
+                    break;
+                case STATS:
+                    Session statsSession = sessionFactory.openSession();
+                    try {
+                        StatsQuery.run(statsSession);
+                    } finally {
+                        statsSession.close();
+                    }
+                    break;
+                case SCAN:
+                    new CountryPager(sessionFactory, 500).forEachRow((c, name, internetUsers, literacyRate) -> { });
+                    break;
+                default:
+                    // a value that depends only on the request, so reruns write the same data
+                    double internetUsers = 0.01 + (request * 7919L % 9999) / 100.0;
+                    Country written = writer.update(code, country -> country.setInternetUsers(internetUsers));
+                    if (fromSnapshot && written != null) snapshots.update(code, written);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void readSnapshot(int operation, String code) {
+        switch (operation) {
+            case READ:
+                snapshots.find(code);
+                break;
+            case STATS:
+                CountryStats.of(snapshots.get());
+                break;
+            default:
+                CountrySnapshot snapshot = snapshots.get();
+                for (int row = 0; row < snapshot.size(); row++) {
+                    snapshot.getCode(row);
+                    snapshot.getName(row);
+                }
+        }
+    }
+
+    private String[] loadCodes() {
+        List<String> codes = new ArrayList<>();
+        new CountryPager(sessionFactory, 1000).forEachRow((code, name, internetUsers, literacyRate) -> codes.add(code));
+        return codes.toArray(new String[0]);
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /*
+     every latency of one kind of request, in nanoseconds
+     */
+    private static class Latencies {
+        private long[] values;
+        private int count;
+        private int errors;
+
+        private Latencies(int capacity) {
+            values = new long[capacity];
+        }
+
+        private synchronized void record(long nanos, boolean ok) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = nanos;
+            if (!ok) errors++;
+        }
+
+        private synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.IndicatorValue;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ streams a csv file into the Country and IndicatorValue tables line by line.
+
+ two layouts are understood:
+  - a World Bank indicator export ("Country Name","Country Code",
+    "Indicator Name","Indicator Code","1960",...). every recorded year
+    of every indicator goes into IndicatorValue. rows for internet
+    users (IT.NET.USER.ZS) and adult literacy (SE.ADT.LITR.ZS) also
+    update Country with the most recent year that has a value.
+  - a flat file with the header code,name,internetUsers,adultLiteracyRate
+
+ rows whose code or name do not fit the columns are skipped.
+ rows are upserted with H2's MERGE through a StatelessSession, sent in
+ JDBC batches and committed every commitInterval rows, so memory use
+ does not grow with the size of the file.
+ */
+public class CountryImporter {
+    public static final String INTERNET_USERS_INDICATOR = "IT.NET.USER.ZS";
+    public static final String ADULT_LITERACY_INDICATOR = "SE.ADT.LITR.ZS";
+
+    // a merged row gets a new @Version, so an edit based on what was read before the import conflicts.
+    // the code is bound again last, for the lookup of the version it had
+    private static final String NEXT_VERSION =
+            "COALESCE((SELECT c.version + 1 FROM Country c WHERE c.code = ?), 0)";
+    private static final String MERGE_NAME =
+            "MERGE INTO Country (code, name, version) KEY (code) VALUES (?, ?, " + NEXT_VERSION + ")";
+    private static final String MERGE_INTERNET =
+            "MERGE INTO Country (code, name, internetUsers, version) KEY (code) " +
+            "VALUES (?, ?, ?, " + NEXT_VERSION + ")";
+    private static final String MERGE_LITERACY =
+            "MERGE INTO Country (code, name, adultLiteracyRate, version) KEY (code) " +
+            "VALUES (?, ?, ?, " + NEXT_VERSION + ")";
+    private static final String MERGE_ALL =
+            "MERGE INTO Country (code, name, internetUsers, adultLiteracyRate, version) KEY (code) " +
+            "VALUES (?, ?, ?, ?, " + NEXT_VERSION + ")";
+    private static final String MERGE_VALUE =
+            "MERGE INTO IndicatorValue (indicator, country, year, value) KEY (indicator, country, year) " +
+            "VALUES (?, ?, ?, ?)";
+
+    // "Country Name","Country Code","Indicator Name","Indicator Code", then one column per year
+    private static final int FIRST_YEAR_COLUMN = 4;
+
+    private final SessionFactory sessionFactory;
+    private final int batchSize;
+    private final int commitInterval;
+
+    public CountryImporter(SessionFactory sessionFactory, int batchSize, int commitInterval) {
+        if (batchSize < 1 || commitInterval < 1) throw new IllegalArgumentException();
+        this.sessionFactory = sessionFactory;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    public Result importFile(Path file) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        List<Row> pending = new ArrayList<>(Math.min(commitInterval, 100_000));
+        List<String> fields = new ArrayList<>();
+
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Layout layout = null;
+            int[] years = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("\uFEFF")) line = line.substring(1);
+                if (line.trim().isEmpty()) continue;
+                Csv.split(line, fields);
+
+                if (layout == null) {
+                    // skip the metadata lines World Bank puts above the header
+                    String first = fields.get(0).trim();
+                    if (first.equalsIgnoreCase("Country Name")) {
+                        layout = Layout.INDICATOR;
+                        years = years(fields);
+                    } else if (first.equalsIgnoreCase("code")) {
+                        layout = Layout.FLAT;
+                    }
+                    continue;
+                }
+
+                result.read++;
+                int added = layout == Layout.INDICATOR
+                        ? indicatorRows(fields, years, pending, result)
+                        : flatRow(fields, pending);
+                if (added == 0) result.skipped++;
+                if (pending.size() >= commitInterval) {
+                    write(session, pending);
+                    result.written += pending.size();
+                    result.commits++;
+                    pending.clear();
+                }
+            }
+            if (layout == null) throw new IOException("No header row found in " + file);
+            if (!pending.isEmpty()) {
+                write(session, pending);
+                result.written += pending.size();
+                result.commits++;
+            }
+        } finally {
+            session.close();
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /*
+     takes the header of an indicator export
+     returns the year of each column, or -1 for columns that are not a year
+     */
+    private static int[] years(List<String> header) {
+        int[] years = new int[header.size()];
+        for (int i = 0; i < years.length; i++) {
+            Double year = i < FIRST_YEAR_COLUMN ? null : Csv.parseDouble(header.get(i));
+            years[i] = year == null ? -1 : year.intValue();
+        }
+        return years;
+    }
+
+    /*
+     queues one value row per recorded year, plus the Country upsert
+     for the two indicators Country keeps. returns the rows queued.
+     */
+    private static int indicatorRows(List<String> fields, int[] years, List<Row> pending, Result result) {
+        if (fields.size() < FIRST_YEAR_COLUMN) return 0;
+        String name = fields.get(0).trim();
+        String code = fields.get(1).trim();
+        String indicator = fields.get(3).trim();
+        if (!fits(code, name) || indicator.isEmpty() || indicator.length() > IndicatorValue.INDICATOR_LENGTH) {
+            return 0;
+        }
+
+        int added = 0;
+        Double latest = null;
+        int columns = Math.min(fields.size(), years.length);
+        for (int i = FIRST_YEAR_COLUMN; i < columns; i++) {
+            if (years[i] < 0) continue;
+            Double value = Csv.parseDouble(fields.get(i));
+            if (value == null) continue;
+            // years run left to right, so the last one seen is the latest
+            latest = value;
+            pending.add(new Row(MERGE_VALUE, indicator, code, years[i], value));
+            result.values++;
+            added++;
+        }
+
+        String sql;
+        if (indicator.equals(INTERNET_USERS_INDICATOR)) {
+            sql = MERGE_INTERNET;
+        } else if (indicator.equals(ADULT_LITERACY_INDICATOR)) {
+            sql = MERGE_LITERACY;
+        } else {
+            return added;
+        }
+        if (latest == null) {
+            pending.add(new Row(MERGE_NAME, code, name, code));
+        } else {
+            pending.add(new Row(sql, code, name, latest, code));
+        }
+        return added + 1;
+    }
+
+    private static int flatRow(List<String> fields, List<Row> pending) {
+        if (fields.size() < 2) return 0;
+        String code = fields.get(0).trim();
+        String name = fields.get(1).trim();
+        if (!fits(code, name)) return 0;
+        Double internet = fields.size() > 2 ? Csv.parseDouble(fields.get(2)) : null;
+        Double literacy = fields.size() > 3 ? Csv.parseDouble(fields.get(3)) : null;
+        pending.add(new Row(MERGE_ALL, code, name, internet, literacy, code));
+        return 1;
+    }
+
+    private static boolean fits(String code, String name) {
+        return !code.isEmpty()
+                && code.length() <= Country.CODE_LENGTH
+                && name.length() <= Country.NAME_LENGTH;
+    }
+
+    /*
+     sends one chunk of rows in JDBC batches and commits it
+     */
+    private void write(StatelessSession session, List<Row> rows) {
+        Transaction transaction = session.beginTransaction();
+        Connection connection = ((SessionImplementor) session).connection();
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        Map<String, Integer> batched = new HashMap<>();
+        try {
+            for (Row row : rows) {
+                PreparedStatement statement = statements.get(row.sql);
+                if (statement == null) {
+                    statement = connection.prepareStatement(row.sql);
+                    statements.put(row.sql, statement);
+                }
+                for (int i = 0; i < row.params.length; i++) {
+                    bind(statement, i + 1, row.params[i]);
+                }
+                statement.addBatch();
+
+                int count = batched.merge(row.sql, 1, Integer::sum);
+                if (count == batchSize) {
+                    statement.executeBatch();
+                    batched.put(row.sql, 0);
+                }
+            }
+            for (Map.Entry<String, PreparedStatement> entry : statements.entrySet()) {
+                if (batched.getOrDefault(entry.getKey(), 0) > 0) entry.getValue().executeBatch();
+            }
+            closeAll(statements.values());
+            transaction.commit();
+        } catch (SQLException e) {
+            closeAll(statements.values());
+            transaction.rollback();
+            throw new HibernateException("Could not write import batch: " + e.getMessage(), e);
+        }
+    }
+
+    private static void closeAll(Iterable<PreparedStatement> statements) {
+        for (PreparedStatement statement : statements) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // nothing left to do with a statement that will not close
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            // only the indicator values are ever missing
+            statement.setNull(index, Types.DOUBLE);
+        } else if (value instanceof Double) {
+            statement.setDouble(index, (Double) value);
+        } else if (value instanceof Integer) {
+            statement.setInt(index, (Integer) value);
+        } else {
+            statement.setString(index, (String) value);
+        }
+    }
+
+    private enum Layout { INDICATOR, FLAT }
+
+    private static class Row {
+        private final String sql;
+        private final Object[] params;
+
+        private Row(String sql, Object... params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    public static class Result {
+        private long read;
+        private long written;
+        private long skipped;
+        private long values;
+        private long commits;
+        private long elapsedNanos;
+
+        public long getRead() {
+            return read;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getValues() {
+            return values;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : written * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+}
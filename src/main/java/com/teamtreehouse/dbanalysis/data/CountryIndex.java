@@ -0,0 +1,91 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ case-insensitive hash indexes on country code and name, so the
+ validation prompts can check a value without loading the whole table,
+ and the names in order for prefix and fuzzy search.
+ the owner keeps it in step with every save, update and delete.
+ */
+public class CountryIndex {
+    private final Map<String, String> nameByCode = new HashMap<>();
+    private final Map<String, String> codeByName = new HashMap<>();
+    private final NameSearch names = new NameSearch();
+
+    public static CountryIndex of(CountrySnapshot snapshot) {
+        CountryIndex index = new CountryIndex();
+        for (int i = 0; i < snapshot.size(); i++) {
+            index.put(snapshot.getCode(i), snapshot.getName(i));
+        }
+        return index;
+    }
+
+    public synchronized boolean isCodeTaken(String code) {
+        return nameByCode.containsKey(key(code));
+    }
+
+    public synchronized boolean isNameTaken(String name) {
+        return codeByName.containsKey(key(name));
+    }
+
+    /*
+     returns the code of the country with the given name, or null
+     */
+    public synchronized String findCodeByName(String name) {
+        return codeByName.get(key(name));
+    }
+
+    /*
+     returns the name of the country with the given code, or null
+     */
+    public synchronized String findNameByCode(String code) {
+        return nameByCode.get(key(code));
+    }
+
+    /*
+     returns every country in name order
+     */
+    public synchronized List<NameSearch.Match> allByName() {
+        return names.all();
+    }
+
+    public synchronized List<NameSearch.Match> namesStartingWith(String prefix, int limit) {
+        return names.startingWith(prefix, limit);
+    }
+
+    public synchronized List<NameSearch.Match> namesCloseTo(String query, int maxEdits, int limit) {
+        return names.closeTo(query, maxEdits, limit);
+    }
+
+    public synchronized void put(Country country) {
+        put(country.getCode(), country.getName());
+    }
+
+    public synchronized void put(String code, String name) {
+        nameByCode.put(key(code), name);
+        if (name != null) codeByName.put(key(name), code);
+        names.put(code, name);
+    }
+
+    public synchronized void update(String previousCode, Country country) {
+        remove(previousCode);
+        put(country);
+    }
+
+    public synchronized void remove(String code) {
+        String name = nameByCode.remove(key(code));
+        if (name != null) codeByName.remove(key(name));
+        names.remove(name);
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
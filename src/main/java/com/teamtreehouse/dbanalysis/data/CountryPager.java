@@ -0,0 +1,71 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+
+/*
+ walks the Country table in code order one page at a time, using the
+ last code seen as the start of the next page (keyset pagination on the
+ primary key). only one page of rows is ever held in memory, and the
+ first rows can be handled before the rest of the table is read.
+
+ the display no longer pages through the table. it reads the shared
+ columnar CountrySnapshot, which gives up constant memory on purpose:
+ the whole table is held, compactly, so every screen and write hook
+ works from one version of it without another query. the pager is kept
+ for the scans in LoadDriver and QueryBenchmark.
+ */
+public class CountryPager {
+    private static final String FIRST_PAGE =
+            "select c.code, c.name, c.internetUsers, c.adultLiteracyRate from Country c " +
+            "order by c.code";
+    private static final String NEXT_PAGE =
+            "select c.code, c.name, c.internetUsers, c.adultLiteracyRate from Country c " +
+            "where c.code > :last order by c.code";
+
+    public interface RowHandler {
+        void row(String code, String name, Double internetUsers, Double adultLiteracyRate);
+    }
+
+    private final SessionFactory sessionFactory;
+    private final int pageSize;
+
+    public CountryPager(SessionFactory sessionFactory, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException();
+        this.sessionFactory = sessionFactory;
+        this.pageSize = pageSize;
+    }
+
+    /*
+     hands every row to the handler in code order
+     returns the number of rows read
+     */
+    @SuppressWarnings("unchecked")
+    public long forEachRow(RowHandler handler) {
+        long count = 0;
+        Session session = sessionFactory.openSession();
+        try {
+            String last = null;
+            List<Object[]> page;
+            do {
+                page = (last == null
+                        ? session.createQuery(FIRST_PAGE)
+                        : session.createQuery(NEXT_PAGE).setParameter("last", last))
+                        .setReadOnly(true)
+                        .setFetchSize(pageSize)
+                        .setMaxResults(pageSize)
+                        .list();
+                for (Object[] row : page) {
+                    handler.row((String) row[0], (String) row[1], (Double) row[2], (Double) row[3]);
+                }
+                count += page.size();
+                if (!page.isEmpty()) last = (String) page.get(page.size() - 1)[0];
+            } while (page.size() == pageSize);
+        } finally {
+            session.close();
+        }
+        return count;
+    }
+}
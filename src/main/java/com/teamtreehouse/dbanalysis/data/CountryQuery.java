@@ -0,0 +1,73 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ reads the code, name and indicator columns of the whole Country table
+ straight into a columnar snapshot without hydrating Country entities.
+ a forward-only scroll, or with a cache region the query cache, which
+ only serves list().
+ */
+public class CountryQuery {
+    private static final String SNAPSHOT =
+            "select c.code, c.name, c.internetUsers, c.adultLiteracyRate, c.version from Country c";
+
+    private final SessionFactory sessionFactory;
+    private final String cacheRegion;
+
+    public CountryQuery(SessionFactory sessionFactory) {
+        this(sessionFactory, null);
+    }
+
+    /*
+     takes the query cache region to read through, or null to scroll the table
+     */
+    public CountryQuery(SessionFactory sessionFactory, String cacheRegion) {
+        this.sessionFactory = sessionFactory;
+        this.cacheRegion = cacheRegion;
+    }
+
+    /*
+     takes where to put the @Version of each row by code, or null
+     */
+    public CountrySnapshot snapshot(Map<String, Integer> versions) {
+        CountrySnapshot.Builder builder = new CountrySnapshot.Builder();
+        Session session = sessionFactory.openSession();
+        try {
+            Query query = session.createQuery(SNAPSHOT).setReadOnly(true);
+            if (cacheRegion != null) {
+                for (Object[] row : cachedRows(query)) {
+                    builder.add((String) row[0], (String) row[1], (Double) row[2], (Double) row[3]);
+                    if (versions != null) versions.put((String) row[0], (Integer) row[4]);
+                }
+            } else {
+                ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (rows.next()) {
+                        builder.add((String) rows.get(0), (String) rows.get(1),
+                                (Double) rows.get(2), (Double) rows.get(3));
+                        if (versions != null) versions.put((String) rows.get(0), (Integer) rows.get(4));
+                    }
+                } finally {
+                    rows.close();
+                }
+            }
+        } finally {
+            session.close();
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> cachedRows(Query query) {
+        return query.setCacheable(true).setCacheRegion(cacheRegion).list();
+    }
+}
@@ -0,0 +1,232 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import org.hibernate.HibernateException;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+ writes single countries under optimistic locking.
+
+ Country carries a @Version column, so an update or delete of a row
+ someone else changed since it was read fails instead of overwriting
+ their change. when that happens the write is retried against the
+ latest row: an update applies its change again to the fresh values
+ (so an edit to one field keeps edits other writers made to the rest),
+ and a delete deletes whatever is there now. no lock is held between
+ writers, so writes to different countries run fully in parallel.
+
+ an edit someone made to a country they were shown passes the version
+ they saw. if the row has moved on since, the write is not made and a
+ ConflictException carries the row as it is now, so the edit is never
+ laid over changes its author did not see.
+ */
+public class CountryWriter {
+    private final SessionFactory sessionFactory;
+    private final int maxAttempts;
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public CountryWriter(SessionFactory sessionFactory, int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException();
+        this.sessionFactory = sessionFactory;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /*
+     takes a code and the change to make to that country
+     returns the country as written, or null when there is no such code.
+     the change may run more than once, each time on a fresh copy of the
+     latest row, so read-modify-write changes such as adding to a value
+     are safe. a change may also give the country a new code.
+     */
+    public Country update(String code, Consumer<Country> change) {
+        return update(code, null, change);
+    }
+
+    /*
+     takes a code, the @Version of the row the change was based on, and the change
+     returns the country as written, or null when there is no such code.
+     throws ConflictException when the row is no longer at that version
+     */
+    public Country update(String code, int expectedVersion, Consumer<Country> change) {
+        return update(code, Integer.valueOf(expectedVersion), change);
+    }
+
+    Country update(String code, Integer expectedVersion, Consumer<Country> change) {
+        for (int attempt = 1; ; attempt++) {
+            Session session = sessionFactory.openSession();
+            try {
+                session.beginTransaction();
+                // on a retry the row is read again, so a writer that got in first shows up as a conflict here
+                Country changed = update(session, code, expectedVersion, change);
+                if (changed == null) {
+                    session.getTransaction().rollback();
+                    return null;
+                }
+                session.getTransaction().commit();
+                return changed;
+            } catch (StaleStateException | LockAcquisitionException | PessimisticLockException e) {
+                rollback(session);
+                conflict(attempt, e);
+            } catch (HibernateException | ConflictException e) {
+                rollback(session);
+                throw e;
+            } finally {
+                session.close();
+            }
+        }
+    }
+
+    /*
+     takes a code
+     returns the country as it was when deleted, or null when there was none
+     */
+    public Country delete(String code) {
+        return delete(code, null);
+    }
+
+    /*
+     takes a code and the @Version of the row that was shown
+     returns the country as it was when deleted, or null when there was none.
+     throws ConflictException when the row is no longer at that version
+     */
+    public Country delete(String code, int expectedVersion) {
+        return delete(code, Integer.valueOf(expectedVersion));
+    }
+
+    Country delete(String code, Integer expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            Session session = sessionFactory.openSession();
+            try {
+                session.beginTransaction();
+                Country deleted = delete(session, code, expectedVersion);
+                if (deleted == null) {
+                    session.getTransaction().rollback();
+                    return null;
+                }
+                session.getTransaction().commit();
+                return deleted;
+            } catch (StaleStateException | LockAcquisitionException | PessimisticLockException e) {
+                rollback(session);
+                conflict(attempt, e);
+            } catch (HibernateException | ConflictException e) {
+                rollback(session);
+                throw e;
+            } finally {
+                session.close();
+            }
+        }
+    }
+
+    /*
+     the update on its own, inside a transaction the caller owns.
+     takes the @Version the change was based on, or null to change whatever is there.
+     returns the country as it will be written, or null when there is no such code
+     */
+    static Country update(Session session, String code, Integer expectedVersion, Consumer<Country> change) {
+        Country current = session.get(Country.class, code);
+        if (current == null) return null;
+        checkVersion(current, expectedVersion);
+        Country changed = copyOf(current);
+        change.accept(changed);
+        if (changed.getCode().equals(current.getCode())) {
+            current.setName(changed.getName());
+            current.setInternetUsers(changed.getInternetUsers());
+            current.setAdultLiteracyRate(changed.getAdultLiteracyRate());
+            return current;
+        }
+        // the code is the id, so a new code means replacing the row
+        session.delete(current);
+        session.flush();
+        session.save(changed);
+        return changed;
+    }
+
+    /*
+     the delete on its own, inside a transaction the caller owns.
+     flushed straight away so the code can be added again in the same transaction.
+     returns the country that was deleted, or null when there is no such code
+     */
+    static Country delete(Session session, String code, Integer expectedVersion) {
+        Country current = session.get(Country.class, code);
+        if (current == null) return null;
+        checkVersion(current, expectedVersion);
+        session.delete(current);
+        session.flush();
+        return current;
+    }
+
+    private static void checkVersion(Country current, Integer expectedVersion) {
+        if (expectedVersion != null && current.getVersion() != expectedVersion) {
+            throw new ConflictException(new Country.CountryBuilder(current.getCode(), current.getName())
+                    .withInternetUsers(current.getInternetUsers() == null ? 0.00 : current.getInternetUsers())
+                    .withAdultLiteracyRate(current.getAdultLiteracyRate() == null ? 0.00 : current.getAdultLiteracyRate())
+                    .withVersion(current.getVersion())
+                    .build());
+        }
+    }
+
+    /*
+     returns how many writes have had to be retried so far
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    private void conflict(int attempt, HibernateException e) {
+        conflicts.incrementAndGet();
+        if (attempt >= maxAttempts) throw e;
+        // a short random pause so the writers that collided do not collide again
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1 << Math.min(attempt, 6)));
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static void rollback(Session session) {
+        // a failed commit leaves the transaction marked, not active
+        if (session.getTransaction().getStatus().canRollback()) {
+            session.getTransaction().rollback();
+        }
+    }
+
+    private static Country copyOf(Country country) {
+        Country copy = new Country();
+        copy.setCode(country.getCode());
+        copy.setName(country.getName());
+        copy.setInternetUsers(country.getInternetUsers());
+        copy.setAdultLiteracyRate(country.getAdultLiteracyRate());
+        return copy;
+    }
+
+    /*
+     a write based on a version of the row that is no longer the latest
+     */
+    public static class ConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Country current;
+
+        private ConflictException(Country current) {
+            super(current.getCode() + " was changed by someone else since it was read");
+            this.current = current;
+        }
+
+        /*
+         returns a copy of the row as it is now, missing values as 0.00
+         */
+        public Country getCurrent() {
+            return current;
+        }
+    }
+}
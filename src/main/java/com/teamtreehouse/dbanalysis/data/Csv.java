@@ -0,0 +1,59 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import java.util.List;
+
+/*
+ small helpers for the comma separated files the World Bank exports.
+ fields may be wrapped in double quotes, and a quote inside a quoted
+ field is written twice.
+ */
+public class Csv {
+
+    /*
+     takes one line and a list to reuse
+     fills the list with the fields of the line
+     */
+    public static List<String> split(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /*
+     takes a field value
+     returns it as a number, or null when it is blank or not a number
+     */
+    public static Double parseDouble(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) return null;
+        try {
+            return Double.parseDouble(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
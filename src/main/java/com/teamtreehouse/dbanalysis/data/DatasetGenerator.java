@@ -0,0 +1,194 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/*
+ writes a made-up World Bank indicator export, the same layout
+ CountryImporter reads, so a database of any size can be built with
+ the normal import:
+
+   java ... com.teamtreehouse.dbanalysis.data.DatasetGenerator FILE
+        [--countries N] [--indicators N] [--first-year Y] [--last-year Y]
+        [--internet-null R] [--literacy-null R] [--year-null R] [--seed S]
+
+ the same arguments always give the same file. codes are three
+ characters from A-Z and 0-9 to fit the Country table, so there can
+ be at most 46656 countries; the row count comes from indicators and
+ years instead (46656 countries, 20 indicators and 57 years is over
+ 50 million candidate values).
+
+ the first two indicators are internet users and adult literacy, so
+ the import fills Country from them. --internet-null and --literacy-null
+ are the share of countries that never have a value for them, and
+ --year-null the share of the remaining year cells left blank.
+ */
+public class DatasetGenerator {
+    public static final int MAX_COUNTRIES = 36 * 36 * 36;
+    private static final String DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private int countries = 1000;
+    private int indicators = 10;
+    private int firstYear = 1960;
+    private int lastYear = 2016;
+    private double internetNull = 0.05;
+    private double literacyNull = 0.75;
+    private double yearNull = 0.3;
+    private long seed = 42;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("expected: DatasetGenerator FILE [--countries N] [--indicators N] " +
+                    "[--first-year Y] [--last-year Y] [--internet-null R] [--literacy-null R] " +
+                    "[--year-null R] [--seed S]");
+            System.exit(2);
+        }
+        DatasetGenerator generator = new DatasetGenerator();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            generator.set(args[i], args[i + 1]);
+        }
+        long start = System.nanoTime();
+        long values = generator.write(Paths.get(args[0]));
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("Wrote %d countries, %d indicators, %d values to %s in %.1f s%n",
+                generator.countries, generator.indicators, values, args[0], seconds);
+    }
+
+    private void set(String option, String value) {
+        switch (option) {
+            case "--countries":
+                countries = Integer.parseInt(value);
+                if (countries < 1 || countries > MAX_COUNTRIES) {
+                    throw new IllegalArgumentException("--countries must be 1 to " + MAX_COUNTRIES);
+                }
+                break;
+            case "--indicators":
+                indicators = Math.max(2, Integer.parseInt(value));
+                break;
+            case "--first-year":
+                firstYear = Integer.parseInt(value);
+                break;
+            case "--last-year":
+                lastYear = Integer.parseInt(value);
+                break;
+            case "--internet-null":
+                internetNull = ratio(option, value);
+                break;
+            case "--literacy-null":
+                literacyNull = ratio(option, value);
+                break;
+            case "--year-null":
+                yearNull = ratio(option, value);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + option);
+        }
+    }
+
+    private static double ratio(String option, String value) {
+        double ratio = Double.parseDouble(value);
+        if (ratio < 0 || ratio > 1) throw new IllegalArgumentException(option + " must be 0 to 1");
+        return ratio;
+    }
+
+    /*
+     takes the file to write
+     returns the number of values written
+     */
+    public long write(Path file) throws IOException {
+        if (lastYear < firstYear) throw new IllegalArgumentException("last year is before first year");
+        Random random = new Random(seed);
+        long values = 0;
+        StringBuilder line = new StringBuilder(1024);
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            line.append("\"Country Name\",\"Country Code\",\"Indicator Name\",\"Indicator Code\"");
+            for (int year = firstYear; year <= lastYear; year++) {
+                line.append(",\"").append(year).append('"');
+            }
+            out.write(line.append('\n').toString());
+
+            for (int c = 0; c < countries; c++) {
+                String code = code(c);
+                String name = "Synthetic " + code;
+                for (int i = 0; i < indicators; i++) {
+                    line.setLength(0);
+                    line.append('"').append(name).append("\",\"").append(code).append("\",\"")
+                            .append(indicatorName(i)).append("\",\"").append(indicatorCode(i)).append('"');
+                    // draw every number even when it is not used, so one setting
+                    // does not shift the values the other settings produce
+                    double missing = random.nextDouble();
+                    boolean recorded = missing >= (i == 0 ? internetNull : i == 1 ? literacyNull : 0);
+                    double level = random.nextDouble();
+                    for (int year = firstYear; year <= lastYear; year++) {
+                        double cell = random.nextDouble();
+                        double noise = random.nextDouble();
+                        line.append(',');
+                        if (recorded && cell >= yearNull) {
+                            line.append(round2(value(i, level, (year - firstYear + 1.0) / (lastYear - firstYear + 1.0), noise)));
+                            values++;
+                        }
+                    }
+                    out.write(line.append('\n').toString());
+                }
+            }
+        }
+        return values;
+    }
+
+    /*
+     internet users climb over the years, literacy sits between 30
+     and 100, the others wander around their own level
+     */
+    private static double value(int indicator, double level, double progress, double noise) {
+        switch (indicator) {
+            case 0:
+                return Math.min(99.99, Math.max(0.01, 100 * level * progress + noise));
+            case 1:
+                return Math.min(99.99, 30 + 70 * level + 2 * noise);
+            default:
+                return 1000 * level * (0.9 + 0.2 * noise);
+        }
+    }
+
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    static String code(int index) {
+        return new String(new char[]{
+                DIGITS.charAt(index / (36 * 36) % 36),
+                DIGITS.charAt(index / 36 % 36),
+                DIGITS.charAt(index % 36)});
+    }
+
+    private static String indicatorCode(int indicator) {
+        switch (indicator) {
+            case 0:
+                return CountryImporter.INTERNET_USERS_INDICATOR;
+            case 1:
+                return CountryImporter.ADULT_LITERACY_INDICATOR;
+            default:
+                return String.format("SYN.IND.%03d", indicator - 1);
+        }
+    }
+
+    private static String indicatorName(int indicator) {
+        switch (indicator) {
+            case 0:
+                return "Internet users (per 100 people)";
+            case 1:
+                return "Literacy rate, adult total (% of people ages 15 and above)";
+            default:
+                return "Synthetic indicator " + (indicator - 1);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.util.Collection;
+import java.util.List;
+
+/*
+ reads the IndicatorValue table. series are read with a range query on
+ (indicator, country, year) and go straight into primitive arrays.
+ */
+public class IndicatorQuery {
+
+    @SuppressWarnings("unchecked")
+    public static List<String> listIndicators(Session session) {
+        return session.createQuery("select distinct v.indicator from IndicatorValue v order by v.indicator")
+                .setReadOnly(true)
+                .list();
+    }
+
+    /*
+     takes indicator codes
+     returns the first and last year with a value for any of them, null when there are none
+     */
+    public static int[] yearRange(Session session, Collection<String> indicators) {
+        Object[] row = (Object[]) session.createQuery(
+                "select min(v.year), max(v.year) from IndicatorValue v where v.indicator in (:indicators)")
+                .setParameterList("indicators", indicators)
+                .setReadOnly(true)
+                .uniqueResult();
+        if (row == null || row[0] == null) return null;
+        return new int[]{(Integer) row[0], (Integer) row[1]};
+    }
+
+    /*
+     takes an indicator code and an inclusive span of years
+     returns every country's values for those years
+     */
+    public static IndicatorSeries loadSeries(Session session, String indicator, int firstYear, int lastYear) {
+        IndicatorSeries.Builder builder = new IndicatorSeries.Builder(indicator, firstYear, lastYear);
+        ScrollableResults rows = session.createQuery(
+                "select v.country, v.year, v.value from IndicatorValue v " +
+                "where v.indicator = :indicator and v.year between :first and :last " +
+                "order by v.country, v.year")
+                .setParameter("indicator", indicator)
+                .setParameter("first", firstYear)
+                .setParameter("last", lastYear)
+                .setReadOnly(true)
+                .setFetchSize(1000)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        while (rows.next()) {
+            builder.add((String) rows.get(0), (Integer) rows.get(1), (Double) rows.get(2));
+        }
+        rows.close();
+        return builder.build();
+    }
+}
@@ -0,0 +1,193 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ country names in case-folded order, for completing a prefix and for
+ finding names a few typos away from what was typed.
+
+ a prefix is a range of the sorted keys, found in O(log n). the fuzzy
+ search matches what was typed against the closest start of each name,
+ so a misspelt prefix still completes. it walks the keys in order as
+ if they were a trie: a name shares
+ the edit distance rows for its common prefix with the name before it,
+ and once a prefix is too far from the query every name under it is
+ skipped without being looked at.
+ */
+public class NameSearch {
+    private final TreeMap<String, Match> byName = new TreeMap<>();
+
+    public void put(String code, String name) {
+        if (name == null) return;
+        byName.put(key(name), new Match(code, name, 0));
+    }
+
+    public void remove(String name) {
+        if (name == null) return;
+        byName.remove(key(name));
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    /*
+     returns every name in order
+     */
+    public List<Match> all() {
+        return new ArrayList<>(byName.values());
+    }
+
+    /*
+     takes what was typed and the most matches wanted
+     returns the names that start with it, in order
+     */
+    public List<Match> startingWith(String prefix, int limit) {
+        String from = key(prefix);
+        List<Match> matches = new ArrayList<>();
+        for (Match match : byName.tailMap(from, true).values()) {
+            if (matches.size() == limit || !key(match.getName()).startsWith(from)) break;
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    /*
+     takes what was typed, how many edits to allow and the most matches wanted
+     returns the names that start with something within that many
+     insertions, deletions or substitutions of it, closest first and then in order
+     */
+    public List<Match> closeTo(String query, int maxEdits, int limit) {
+        String target = key(query);
+        List<Match> matches = new ArrayList<>();
+        if (byName.isEmpty()) return matches;
+        int columns = target.length() + 1;
+        // rows[d] is the distance from the first d letters of the current name to each prefix of the query,
+        // with the closest any of those first d letters come to the whole query in the extra last slot
+        List<int[]> rows = new ArrayList<>();
+        int[] first = new int[columns + 1];
+        for (int j = 0; j < columns; j++) {
+            first[j] = j;
+        }
+        first[columns] = target.length();
+        rows.add(first);
+        // the name the rows were last filled in for
+        String previous = "";
+        // the last prefix that cannot get any closer to the query, and how close it came.
+        // every name under it ends up with that distance without being looked at
+        String deadPrefix = null;
+        int deadDistance = 0;
+
+        Iterator<Map.Entry<String, Match>> entries = byName.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Match> entry = entries.next();
+            String name = entry.getKey();
+            if (deadPrefix != null && name.startsWith(deadPrefix)) {
+                if (deadDistance <= maxEdits) {
+                    matches.add(entry.getValue().at(deadDistance));
+                } else {
+                    // out of range, so jump over everything under the prefix like a trie would
+                    String next = after(deadPrefix);
+                    if (next == null) break;
+                    entries = byName.tailMap(next, true).entrySet().iterator();
+                }
+                continue;
+            }
+            deadPrefix = null;
+            int shared = commonPrefix(previous, name);
+            for (int depth = shared + 1; depth <= name.length(); depth++) {
+                int[] above = rows.get(depth - 1);
+                int[] row;
+                if (depth < rows.size()) {
+                    row = rows.get(depth);
+                } else {
+                    row = new int[columns + 1];
+                    rows.add(row);
+                }
+                row[0] = depth;
+                int best = row[0];
+                char c = name.charAt(depth - 1);
+                for (int j = 1; j < columns; j++) {
+                    int cost = target.charAt(j - 1) == c ? 0 : 1;
+                    row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                    best = Math.min(best, row[j]);
+                }
+                row[columns] = Math.min(above[columns], row[columns - 1]);
+                if (best > maxEdits) {
+                    // more letters only take the name further away
+                    deadPrefix = name.substring(0, depth);
+                    deadDistance = row[columns];
+                    break;
+                }
+            }
+            previous = deadPrefix != null ? deadPrefix : name;
+            int distance = deadPrefix != null ? deadDistance : rows.get(name.length())[columns];
+            if (distance <= maxEdits) matches.add(entry.getValue().at(distance));
+        }
+        // a stable sort keeps names with the same distance in order
+        Collections.sort(matches, (a, b) -> Integer.compare(a.getDistance(), b.getDistance()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /*
+     returns the first string that sorts after everything starting with the prefix
+     */
+    private static String after(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) return null;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static class Match {
+        private final String code;
+        private final String name;
+        private final int distance;
+
+        private Match(String code, String name, int distance) {
+            this.code = code;
+            this.name = name;
+            this.distance = distance;
+        }
+
+        private Match at(int distance) {
+            return new Match(code, name, distance);
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /*
+         returns the number of edits from what was typed, 0 for a prefix match
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ the codes and names that writes still on a write-behind queue take or
+ free. the CountryIndex only learns of a write once it commits, so a
+ check for a free code or name asks here first.
+
+ like the write group of a batch, but nothing is cleared until the last
+ queued write has landed or failed. until then what landed is also in
+ the index, and what failed is still held here, which only turns away
+ a code or name that might have been free.
+ */
+public class QueuedWrites {
+    private final Set<String> codes = new HashSet<>();
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> freedCodes = new HashSet<>();
+    private final Set<String> freedNames = new HashSet<>();
+    private int writes;
+
+    /*
+     takes the code and name a write frees and the ones it takes, any of them null.
+     call before the write is queued, so it cannot land first
+     */
+    public synchronized void queued(String freedCode, String freedName, String code, String name) {
+        writes++;
+        free(freedCode, codes, freedCodes);
+        free(freedName, names, freedNames);
+        take(code, codes, freedCodes);
+        take(name, names, freedNames);
+    }
+
+    /*
+     called once for each queued write after it commits or fails
+     */
+    public synchronized void landed() {
+        if (writes > 0) writes--;
+        if (writes == 0) {
+            codes.clear();
+            names.clear();
+            freedCodes.clear();
+            freedNames.clear();
+        }
+    }
+
+    public synchronized boolean isCodeTaken(String code) {
+        return codes.contains(key(code));
+    }
+
+    public synchronized boolean isCodeFreed(String code) {
+        return freedCodes.contains(key(code));
+    }
+
+    public synchronized boolean isNameTaken(String name) {
+        return names.contains(key(name));
+    }
+
+    public synchronized boolean isNameFreed(String name) {
+        return freedNames.contains(key(name));
+    }
+
+    private static void take(String value, Set<String> taken, Set<String> freed) {
+        if (value == null) return;
+        freed.remove(key(value));
+        taken.add(key(value));
+    }
+
+    private static void free(String value, Set<String> taken, Set<String> freed) {
+        if (value == null) return;
+        taken.remove(key(value));
+        freed.add(key(value));
+    }
+
+    // the same matching as CountryIndex
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
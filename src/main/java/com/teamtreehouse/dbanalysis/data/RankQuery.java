@@ -0,0 +1,108 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.CountryIndicator;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/*
+ the highest or lowest countries by an indicator, and the countries
+ with a value in a range, read in order off the rank indexes on Country
+ so only the rows returned are touched: O(k log n) for k countries.
+
+ 0.00 marks a missing value, and a query for "<> 0" cannot walk an
+ index in order, so the values below and above zero are read as two
+ ranges, the one that comes first in the order before the other.
+ ties are broken by code.
+ */
+public class RankQuery {
+
+    /*
+     H2 cannot read an index backwards, so the highest countries need an
+     index sorted descending. hibernate 5.1 ignores "desc" in @Index, so
+     these are made here whenever the schema is updated.
+     */
+    public static void createIndexes(SessionFactory sessionFactory) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            for (CountryIndicator indicator : CountryIndicator.values()) {
+                session.createSQLQuery("create index if not exists " + indexName(indicator) +
+                        " on Country (" + indicator.getProperty() + " desc, code)").executeUpdate();
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static String indexName(CountryIndicator indicator) {
+        // internetUsers becomes idx_country_internet_users_rank_desc
+        return "idx_country_" + indicator.getProperty().replaceAll("([A-Z])", "_$1").toLowerCase() + "_rank_desc";
+    }
+
+    /*
+     takes the indicator, how many countries and whether to start from the highest
+     returns them best first
+     */
+    public static CountrySnapshot top(Session session, CountryIndicator indicator, int k, boolean highest) {
+        CountrySnapshot.Builder builder = new CountrySnapshot.Builder(k);
+        // a limit of 0 would mean no limit at all
+        if (k <= 0) return builder.build();
+        String value = "c." + indicator.getProperty();
+        String order = " order by " + value + (highest ? " desc" : "") + ", c.code";
+        int found = read(session, "where " + value + (highest ? " > 0" : " < 0") + order, k, builder);
+        if (found < k) {
+            read(session, "where " + value + (highest ? " < 0" : " > 0") + order, k - found, builder);
+        }
+        return builder.build();
+    }
+
+    /*
+     takes the indicator and an inclusive range of values
+     returns every country with a recorded value in it, lowest first
+     */
+    public static CountrySnapshot range(Session session, CountryIndicator indicator, double low, double high) {
+        CountrySnapshot.Builder builder = new CountrySnapshot.Builder();
+        String value = "c." + indicator.getProperty();
+        String order = " order by " + value + ", c.code";
+        String between = "where " + value + " >= :low and " + value + " <= :high and " + value;
+        if (low > high) return builder.build();
+        if (low < 0) read(session, between + " < 0" + order, low, high, builder);
+        if (high > 0) read(session, between + " > 0" + order, low, high, builder);
+        return builder.build();
+    }
+
+    private static int read(Session session, String where, int limit, CountrySnapshot.Builder builder) {
+        return read(createQuery(session, where).setMaxResults(limit), builder);
+    }
+
+    private static int read(Session session, String where, double low, double high,
+                            CountrySnapshot.Builder builder) {
+        return read(createQuery(session, where)
+                .setParameter("low", low)
+                .setParameter("high", high)
+                .setFetchSize(1000), builder);
+    }
+
+    private static Query createQuery(Session session, String where) {
+        return session.createQuery("select c.code, c.name, c.internetUsers, c.adultLiteracyRate " +
+                "from Country c " + where)
+                .setReadOnly(true);
+    }
+
+    private static int read(Query query, CountrySnapshot.Builder builder) {
+        int rows = 0;
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+        while (results.next()) {
+            builder.add((String) results.get(0), (String) results.get(1),
+                    (Double) results.get(2), (Double) results.get(3));
+            rows++;
+        }
+        results.close();
+        return rows;
+    }
+}
@@ -0,0 +1,140 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+ remembers which mapping a database file was last brought up to date
+ with, so a later start can skip asking H2 about its tables.
+
+ the fingerprint is a hash of the mapped classes' bytecode and of
+ hibernate.cfg.xml, and is kept in a file next to the database
+ (data/worldbank.schema for data/worldbank). any change to an entity
+ changes the fingerprint, so a stale one only ever costs a full check.
+
+ the marker also names the database file it was written for, by its
+ file key (the inode), size and modified time, so it is written once
+ the database is closed. a missing database, one made again, one copied
+ back from a backup, or one changed by a run that never got to close,
+ does not match and gets the full check too.
+ */
+public class SchemaCheck {
+    private static final String CONFIG = "/hibernate.cfg.xml";
+
+    // H2 1.4 keeps a database in one of these, the MVStore one by default
+    private static final String[] DATABASE_SUFFIXES = {".mv.db", ".h2.db"};
+
+    private final String base;
+    private final String fingerprint;
+
+    /*
+     takes the H2 url and the mapped entity classes
+     */
+    public SchemaCheck(String url, Class<?>... entities) {
+        this.base = baseFor(url);
+        this.fingerprint = fingerprint(entities);
+    }
+
+    /*
+     returns true when this same database file was last updated or validated
+     against this same mapping
+     */
+    public boolean isCurrent() {
+        if (base == null || fingerprint == null) return false;
+        String identity = identity();
+        if (identity == null) return false;
+        Path file = Paths.get(base + ".schema");
+        try {
+            return Files.exists(file)
+                    && new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()
+                    .equals(fingerprint + " " + identity);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     call once the schema has been updated or validated and the database is closed
+     */
+    public void markCurrent() {
+        if (base == null || fingerprint == null) return;
+        String identity = identity();
+        if (identity == null) return;
+        try {
+            Files.write(Paths.get(base + ".schema"),
+                    (fingerprint + " " + identity + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // only costs a full check on the next fast start
+        }
+    }
+
+    /*
+     returns the file key, size and modified time of the database file, null when there is none
+     */
+    private String identity() {
+        for (String suffix : DATABASE_SUFFIXES) {
+            Path database = Paths.get(base + suffix);
+            if (!Files.isRegularFile(database)) continue;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(database, BasicFileAttributes.class);
+                return suffix + " " + attributes.fileKey() + " " + attributes.size()
+                        + " " + attributes.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /*
+     jdbc:h2:./data/worldbank;OPTIONS becomes ./data/worldbank, which the
+     database and schema files are named after. in-memory and server
+     databases get none
+     */
+    private static String baseFor(String url) {
+        if (url == null || !url.startsWith("jdbc:h2:")) return null;
+        String path = url.substring("jdbc:h2:".length());
+        int options = path.indexOf(';');
+        if (options >= 0) path = path.substring(0, options);
+        if (path.startsWith("file:")) path = path.substring("file:".length());
+        if (path.startsWith("mem:") || path.startsWith("tcp:") || path.startsWith("ssl:")) return null;
+        if (path.startsWith("~")) path = System.getProperty("user.home") + path.substring(1);
+        return path;
+    }
+
+    private static String fingerprint(Class<?>... entities) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, SchemaCheck.class.getResourceAsStream(CONFIG));
+            for (Class<?> entity : entities) {
+                digest.update(entity.getName().getBytes(StandardCharsets.UTF_8));
+                update(digest, entity.getResourceAsStream(entity.getSimpleName() + ".class"));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, InputStream in) throws IOException {
+        if (in == null) throw new IOException("missing class or config resource");
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+}
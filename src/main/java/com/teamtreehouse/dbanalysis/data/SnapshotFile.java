@@ -0,0 +1,177 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ a CountrySnapshot saved in a binary file that is mapped back into
+ memory and used in place, so loading one costs the same for ten rows
+ as for ten million and the values never go on the heap.
+
+ the layout is little endian, every section starts on 8 bytes:
+
+   "WBSNAP01", int version, int rows
+   7 longs: where each section below starts, and the end of the file
+   internet users        one double per row
+   adult literacy rate   one double per row
+   has internet users    one bit per row, in longs
+   has literacy rate     one bit per row, in longs
+   string offsets        2 * rows + 1 ints into the string bytes
+   string bytes          utf-8, the code of row r is string 2r and its name 2r + 1
+
+ a mapping is limited to 2 GB, roughly 25 million countries.
+ */
+public class SnapshotFile {
+    private static final byte[] MAGIC = "WBSNAP01".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int SECTIONS = 6;
+    private static final int HEADER = MAGIC.length + 8 + (SECTIONS + 1) * 8;
+
+    /*
+     takes the snapshot and where to put it, an existing file is replaced
+     returns the size of the file in bytes
+     */
+    public static long write(CountrySnapshot snapshot, Path file) throws IOException {
+        int rows = snapshot.size();
+        byte[][] strings = new byte[rows * 2][];
+        long stringBytes = 0;
+        for (int row = 0; row < rows; row++) {
+            strings[2 * row] = snapshot.getCode(row).getBytes(StandardCharsets.UTF_8);
+            strings[2 * row + 1] = snapshot.getName(row).getBytes(StandardCharsets.UTF_8);
+            stringBytes += strings[2 * row].length + strings[2 * row + 1].length;
+        }
+        if (stringBytes > Integer.MAX_VALUE) throw new IOException("too many rows for a snapshot file");
+
+        long[] offsets = new long[SECTIONS + 1];
+        offsets[0] = HEADER;
+        offsets[1] = align(offsets[0] + 8L * rows);
+        offsets[2] = align(offsets[1] + 8L * rows);
+        offsets[3] = align(offsets[2] + 8L * CountrySnapshot.words(rows));
+        offsets[4] = align(offsets[3] + 8L * CountrySnapshot.words(rows));
+        offsets[5] = align(offsets[4] + 4L * (2L * rows + 1));
+        offsets[6] = offsets[5] + stringBytes;
+        if (offsets[6] > Integer.MAX_VALUE) throw new IOException("too many rows for a snapshot file");
+
+        // written next to the file and moved over it, so a reader never maps half a file
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offsets[6]);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putInt(VERSION).putInt(rows);
+            for (long offset : offsets) {
+                buffer.putLong(offset);
+            }
+
+            DoubleBuffer internetUsers = section(buffer, offsets, 0).asDoubleBuffer();
+            DoubleBuffer adultLiteracyRate = section(buffer, offsets, 1).asDoubleBuffer();
+            long[] hasInternetUsers = new long[CountrySnapshot.words(rows)];
+            long[] hasAdultLiteracyRate = new long[CountrySnapshot.words(rows)];
+            for (int row = 0; row < rows; row++) {
+                internetUsers.put(snapshot.getInternetUsers(row));
+                adultLiteracyRate.put(snapshot.getAdultLiteracyRate(row));
+                if (snapshot.hasInternetUsers(row)) hasInternetUsers[row >>> 6] |= 1L << row;
+                if (snapshot.hasAdultLiteracyRate(row)) hasAdultLiteracyRate[row >>> 6] |= 1L << row;
+            }
+            section(buffer, offsets, 2).asLongBuffer().put(hasInternetUsers);
+            section(buffer, offsets, 3).asLongBuffer().put(hasAdultLiteracyRate);
+
+            IntBuffer stringOffsets = section(buffer, offsets, 4).asIntBuffer();
+            ByteBuffer bytes = section(buffer, offsets, 5);
+            int position = 0;
+            for (byte[] string : strings) {
+                stringOffsets.put(position);
+                bytes.put(string);
+                position += string.length;
+            }
+            stringOffsets.put(position);
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return offsets[6];
+    }
+
+    /*
+     takes a file written by write()
+     returns a snapshot over the mapped file, which stays mapped
+     for as long as the snapshot is reachable
+     */
+    public static CountrySnapshot map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER) throw new IOException(file + " is not a snapshot file");
+            if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+            // the mapping outlives the channel
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException(file + " is not a snapshot file");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException(file + " is snapshot version " + version + ", expected " + VERSION);
+        int rows = buffer.getInt();
+        long[] offsets = new long[SECTIONS + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = buffer.getLong();
+        }
+        long words = CountrySnapshot.words(rows);
+        if (rows < 0 || offsets[0] != HEADER
+                || offsets[1] < offsets[0] + 8L * rows
+                || offsets[2] < offsets[1] + 8L * rows
+                || offsets[3] < offsets[2] + 8 * words
+                || offsets[4] < offsets[3] + 8 * words
+                || offsets[5] < offsets[4] + 4L * (2L * rows + 1)
+                || offsets[6] < offsets[5] || offsets[6] != buffer.capacity()) {
+            throw new IOException(file + " is damaged");
+        }
+
+        IntBuffer stringOffsets = section(buffer, offsets, 4).asIntBuffer();
+        ByteBuffer bytes = section(buffer, offsets, 5);
+        return CountrySnapshot.ofColumns(rows,
+                row -> string(stringOffsets, bytes, 2 * row),
+                row -> string(stringOffsets, bytes, 2 * row + 1),
+                section(buffer, offsets, 0).asDoubleBuffer(),
+                section(buffer, offsets, 1).asDoubleBuffer(),
+                section(buffer, offsets, 2).asLongBuffer(),
+                section(buffer, offsets, 3).asLongBuffer());
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long[] offsets, int section) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) offsets[section + 1]).position((int) offsets[section]);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     absolute reads only, so any number of threads can share the buffers
+     */
+    private static String string(IntBuffer offsets, ByteBuffer bytes, int index) {
+        int from = offsets.get(index);
+        byte[] string = new byte[offsets.get(index + 1) - from];
+        for (int i = 0; i < string.length; i++) {
+            string[i] = bytes.get(from + i);
+        }
+        return new String(string, StandardCharsets.UTF_8);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
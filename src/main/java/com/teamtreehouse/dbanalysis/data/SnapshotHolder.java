@@ -0,0 +1,302 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ the current CountrySnapshot of the table, shared by every reader.
+
+ each version is immutable and published through a volatile field, so
+ a reader takes one with a single read and keeps a consistent view for
+ as long as it holds on to it, however many writes come after. writers
+ take turns, and publish a new version after their transaction commits.
+
+ a version is a base snapshot plus the rows changed since. a write
+ copies only the changes, the base columns are shared by every version
+ built on them, and the changes are folded into a new base once they
+ reach a sixteenth of the table. the snapshot of a version is put
+ together the first time it is asked for and then kept, and a lookup
+ by code needs only the changes and an index of the base.
+
+ writers to different countries do not wait for each other in the
+ database, so their changes can arrive here out of order. the @Version
+ of every row is kept, read with the table and carried through each
+ fold, and a change older than the row already kept is dropped. a
+ deleted code is remembered too: only a save brings it back, a late
+ update of the row that was deleted is dropped.
+ */
+public class SnapshotHolder {
+    // never fold fewer changes than this, so a small table is not copied on every write
+    private static final int MIN_CHANGES = 64;
+
+    /*
+     reads the whole table, putting the @Version of each row in versions by code
+     */
+    public interface Loader {
+        CountrySnapshot load(Map<String, Integer> versions);
+    }
+
+    private final Loader loader;
+    private volatile Version current;
+
+    /*
+     takes where to read the whole table from, on first use and after reset()
+     */
+    public SnapshotHolder(Loader loader) {
+        this.loader = loader;
+    }
+
+    /*
+     returns the latest version, without a lock once the table is loaded
+     */
+    public CountrySnapshot get() {
+        Version version = current;
+        if (version == null) version = load();
+        return version.snapshot();
+    }
+
+    /*
+     returns a copy of the country with that code in the latest version,
+     or null. a missing value comes back as 0.00, like the edit screens
+     expect, and the copy carries the @Version it was read at
+     */
+    public Country find(String code) {
+        Version version = current;
+        if (version == null) version = load();
+        Row changed = version.changes.get(code);
+        if (changed != null) return changed.deleted ? null : changed.toCountry();
+        CountrySnapshot base = version.base.snapshot;
+        Integer row = version.base.rows().get(code);
+        if (row == null) return null;
+        return new Country.CountryBuilder(base.getCode(row), base.getName(row))
+                .withInternetUsers(base.hasInternetUsers(row) ? base.getInternetUsers(row) : 0.00)
+                .withAdultLiteracyRate(base.hasAdultLiteracyRate(row) ? base.getAdultLiteracyRate(row) : 0.00)
+                .withVersion(version.base.versions.getOrDefault(code, 0))
+                .build();
+    }
+
+    /*
+     takes a country that was saved
+     */
+    public synchronized void put(Country country) {
+        Version version = current;
+        if (version == null || isStale(version, country.getCode(), country.getVersion(), true)) return;
+        Map<String, Row> changes = new LinkedHashMap<>(version.changes);
+        changes.put(country.getCode(), new Row(country));
+        publish(version.base, changes);
+    }
+
+    /*
+     takes the code the country had before and the country as updated.
+     a new code is a new row, and the previous code counts as deleted
+     */
+    public synchronized void update(String previousCode, Country country) {
+        Version version = current;
+        if (version == null) return;
+        boolean newCode = !previousCode.equals(country.getCode());
+        if (isStale(version, country.getCode(), country.getVersion(), newCode)) return;
+        Map<String, Row> changes = new LinkedHashMap<>(version.changes);
+        if (newCode) changes.put(previousCode, Row.deleted(previousCode));
+        changes.put(country.getCode(), new Row(country));
+        publish(version.base, changes);
+    }
+
+    /*
+     takes the code and the @Version of the row that was deleted
+     */
+    public synchronized void remove(String code, int deletedVersion) {
+        Version version = current;
+        if (version == null || isStale(version, code, deletedVersion, false)) return;
+        Map<String, Row> changes = new LinkedHashMap<>(version.changes);
+        changes.put(code, Row.deleted(code));
+        publish(version.base, changes);
+    }
+
+    /*
+     whether a write of that row at that version is older than what is kept.
+     a save makes a new row, so it replaces a deleted one whatever its version
+     */
+    private static boolean isStale(Version version, String code, int incoming, boolean save) {
+        Row changed = version.changes.get(code);
+        boolean deleted = changed != null ? changed.deleted : version.base.deleted.contains(code);
+        if (deleted) return !save;
+        Integer kept = changed != null ? Integer.valueOf(changed.version) : version.base.versions.get(code);
+        return kept != null && kept > incoming;
+    }
+
+    /*
+     drops every version, the next reader loads the table again.
+     for writes that go around save, update and delete, like an import
+     */
+    public synchronized void reset() {
+        current = null;
+    }
+
+    /*
+     under the same lock as the writers, so a write that commits while
+     the table is being read waits and is applied on top. applying a
+     write the load already saw changes nothing.
+     */
+    private synchronized Version load() {
+        if (current == null) {
+            Map<String, Integer> versions = new HashMap<>();
+            CountrySnapshot snapshot = loader.load(versions);
+            current = new Version(new Base(snapshot, versions, Collections.emptySet()), Collections.emptyMap());
+        }
+        return current;
+    }
+
+    private void publish(Base base, Map<String, Row> changes) {
+        Version version = new Version(base, changes);
+        if (changes.size() >= Math.max(MIN_CHANGES, base.snapshot.size() >>> 4)) {
+            version = new Version(base.fold(version.snapshot(), changes), Collections.emptyMap());
+        }
+        current = version;
+    }
+
+    /*
+     a snapshot shared by versions, with the @Version of each row and the
+     codes deleted since the table was read. the row of each code is found on first lookup
+     */
+    private static class Base {
+        private final CountrySnapshot snapshot;
+        private final Map<String, Integer> versions;
+        private final Set<String> deleted;
+        private volatile Map<String, Integer> rows;
+
+        private Base(CountrySnapshot snapshot, Map<String, Integer> versions, Set<String> deleted) {
+            this.snapshot = snapshot;
+            this.versions = versions;
+            this.deleted = deleted;
+        }
+
+        /*
+         takes the snapshot with the changes applied and the changes
+         returns the base to build the next versions on
+         */
+        private Base fold(CountrySnapshot folded, Map<String, Row> changes) {
+            Map<String, Integer> versions = new HashMap<>(this.versions);
+            Set<String> deleted = new HashSet<>(this.deleted);
+            for (Row changed : changes.values()) {
+                if (changed.deleted) {
+                    versions.remove(changed.code);
+                    deleted.add(changed.code);
+                } else {
+                    versions.put(changed.code, changed.version);
+                    deleted.remove(changed.code);
+                }
+            }
+            return new Base(folded, versions, deleted);
+        }
+
+        private Map<String, Integer> rows() {
+            Map<String, Integer> built = rows;
+            if (built == null) {
+                built = new HashMap<>(snapshot.size() * 2);
+                for (int row = 0; row < snapshot.size(); row++) {
+                    built.put(snapshot.getCode(row), row);
+                }
+                rows = built;
+            }
+            return built;
+        }
+    }
+
+    private static class Version {
+        private final Base base;
+        // by code, including the countries that were deleted
+        private final Map<String, Row> changes;
+        private volatile CountrySnapshot snapshot;
+
+        private Version(Base base, Map<String, Row> changes) {
+            this.base = base;
+            this.changes = changes;
+            if (changes.isEmpty()) snapshot = base.snapshot;
+        }
+
+        /*
+         two readers may both put it together the first time,
+         they get equal snapshots and one of them is kept
+         */
+        private CountrySnapshot snapshot() {
+            CountrySnapshot built = snapshot;
+            if (built == null) {
+                built = build();
+                snapshot = built;
+            }
+            return built;
+        }
+
+        /*
+         changed rows stay where they were, new ones go at the end
+         */
+        private CountrySnapshot build() {
+            CountrySnapshot base = this.base.snapshot;
+            CountrySnapshot.Builder builder = new CountrySnapshot.Builder(base.size() + changes.size());
+            Set<String> placed = new HashSet<>();
+            for (int row = 0; row < base.size(); row++) {
+                String code = base.getCode(row);
+                if (!changes.containsKey(code)) {
+                    builder.add(code, base.getName(row),
+                            base.hasInternetUsers(row) ? base.getInternetUsers(row) : null,
+                            base.hasAdultLiteracyRate(row) ? base.getAdultLiteracyRate(row) : null);
+                    continue;
+                }
+                placed.add(code);
+                Row changed = changes.get(code);
+                if (!changed.deleted) changed.addTo(builder);
+            }
+            for (Row changed : changes.values()) {
+                if (!changed.deleted && !placed.contains(changed.code)) changed.addTo(builder);
+            }
+            return builder.build();
+        }
+    }
+
+    private static class Row {
+        private final String code;
+        private final String name;
+        private final Double internetUsers;
+        private final Double adultLiteracyRate;
+        private final int version;
+        private final boolean deleted;
+
+        private Row(Country country) {
+            this(country.getCode(), country.getName(), country.getInternetUsers(),
+                    country.getAdultLiteracyRate(), country.getVersion(), false);
+        }
+
+        private Row(String code, String name, Double internetUsers, Double adultLiteracyRate,
+                    int version, boolean deleted) {
+            this.code = code;
+            this.name = name;
+            this.internetUsers = internetUsers;
+            this.adultLiteracyRate = adultLiteracyRate;
+            this.version = version;
+            this.deleted = deleted;
+        }
+
+        private static Row deleted(String code) {
+            return new Row(code, null, null, null, 0, true);
+        }
+
+        private void addTo(CountrySnapshot.Builder builder) {
+            builder.add(code, name, internetUsers, adultLiteracyRate);
+        }
+
+        private Country toCountry() {
+            return new Country.CountryBuilder(code, name)
+                    .withInternetUsers(internetUsers == null ? 0.00 : internetUsers)
+                    .withAdultLiteracyRate(adultLiteracyRate == null ? 0.00 : adultLiteracyRate)
+                    .withVersion(version)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.stats.Correlation;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import com.teamtreehouse.dbanalysis.stats.Extreme;
+import org.hibernate.Session;
+
+import java.util.List;
+
+/*
+ computes the stats screen inside H2. one aggregate query returns the
+ counts, mins, maxes and correlation sums as a single row, then each
+ min or max country is looked up through the indicator indexes.
+ a null or 0.00 value counts as not recorded, same as CountrySnapshot.
+ */
+public class StatsQuery {
+    private static final String INTERNET = "internetUsers <> 0";
+    private static final String LITERACY = "adultLiteracyRate <> 0";
+    private static final String BOTH = INTERNET + " and " + LITERACY;
+
+    private static final String AGGREGATES = "select count(*), " +
+            "count(case when " + INTERNET + " then 1 end), " +
+            "min(case when " + INTERNET + " then internetUsers end), " +
+            "max(case when " + INTERNET + " then internetUsers end), " +
+            "count(case when " + LITERACY + " then 1 end), " +
+            "min(case when " + LITERACY + " then adultLiteracyRate end), " +
+            "max(case when " + LITERACY + " then adultLiteracyRate end), " +
+            "count(case when " + BOTH + " then 1 end), " +
+            "min(case when " + BOTH + " then internetUsers end), " +
+            "max(case when " + BOTH + " then internetUsers end), " +
+            "min(case when " + BOTH + " then adultLiteracyRate end), " +
+            "max(case when " + BOTH + " then adultLiteracyRate end), " +
+            "sum(case when " + BOTH + " then internetUsers end), " +
+            "sum(case when " + BOTH + " then adultLiteracyRate end), " +
+            "sum(case when " + BOTH + " then internetUsers * internetUsers end), " +
+            "sum(case when " + BOTH + " then adultLiteracyRate * adultLiteracyRate end), " +
+            "sum(case when " + BOTH + " then internetUsers * adultLiteracyRate end) " +
+            "from Country";
+
+    public static CountryStats run(Session session) {
+        Object[] row = (Object[]) session.createSQLQuery(AGGREGATES).uniqueResult();
+
+        Correlation correlation = Correlation.fromSums(
+                asLong(row[7]),
+                asDouble(row[12]),
+                asDouble(row[13]),
+                asDouble(row[14]),
+                asDouble(row[15]),
+                asDouble(row[16]));
+
+        return new CountryStats.Builder()
+                .withCounts(asLong(row[0]), asLong(row[1]), asLong(row[4]))
+                .withInternetExtremes(
+                        findByInternet(session, row[2], false),
+                        findByInternet(session, row[3], false),
+                        findByInternet(session, row[8], true),
+                        findByInternet(session, row[9], true))
+                .withLiteracyExtremes(
+                        findByLiteracy(session, row[5], false),
+                        findByLiteracy(session, row[6], false),
+                        findByLiteracy(session, row[10], true),
+                        findByLiteracy(session, row[11], true))
+                .withCorrelation(correlation)
+                .build();
+    }
+
+    private static Extreme findByInternet(Session session, Object value, boolean requireLiteracy) {
+        if (value == null) return null;
+        return first(session, "from Country c where c.internetUsers = :value" +
+                (requireLiteracy ? " and c.adultLiteracyRate <> 0" : "") +
+                " order by c.code", asDouble(value));
+    }
+
+    private static Extreme findByLiteracy(Session session, Object value, boolean requireInternet) {
+        if (value == null) return null;
+        return first(session, "from Country c where c.adultLiteracyRate = :value" +
+                (requireInternet ? " and c.internetUsers <> 0" : "") +
+                " order by c.code", asDouble(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Extreme first(Session session, String hql, double value) {
+        List<Country> countries = session.createQuery(hql)
+                .setParameter("value", value)
+                .setMaxResults(1)
+                .setReadOnly(true)
+                .setCacheable(true)
+                .setCacheRegion("country-queries")
+                .list();
+        if (countries.isEmpty()) return null;
+        Country c = countries.get(0);
+        double internet = c.getInternetUsers() == null ? 0.00 : c.getInternetUsers();
+        double literacy = c.getAdultLiteracyRate() == null ? 0.00 : c.getAdultLiteracyRate();
+        return new Extreme(c.getName(), internet, internet != 0.00, literacy, literacy != 0.00);
+    }
+
+    private static long asLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static double asDouble(Object value) {
+        return value == null ? 0.00 : ((Number) value).doubleValue();
+    }
+}
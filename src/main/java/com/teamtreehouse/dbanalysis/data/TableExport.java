@@ -0,0 +1,115 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.render.TableRenderer;
+import com.teamtreehouse.dbanalysis.render.ValueTableRenderer;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ streams a table from a forward-only cursor straight into a renderer,
+ one row at a time. nothing is collected on the way, so the memory
+ used is the same for a hundred rows or a hundred million: the cursor's
+ fetch size, one row and the writer's buffer.
+ */
+public class TableExport {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+     takes the file to write, replaced if it is there
+     returns a buffered writer of utf-8 on a FileChannel, gzip compressed at
+     the fastest level when the name ends with .gz. closing it closes the file.
+     */
+    public static Writer open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        WritableByteChannel target = channel;
+        try {
+            if (isCompressed(file)) {
+                target = Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+                    {
+                        // the default level costs several times the rest of the export for a few percent smaller files
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return Channels.newWriter(target, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+    }
+
+    public static boolean isCompressed(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /*
+     writes every country in code order and finishes the renderer
+     returns the number of rows written
+     */
+    public static long countries(Session session, TableRenderer renderer) {
+        ScrollableResults rows = scroll(session.createQuery(
+                "select c.code, c.name, c.internetUsers, c.adultLiteracyRate from Country c order by c.code"));
+        try {
+            renderer.header();
+            while (rows.next()) {
+                Double internetUsers = (Double) rows.get(2);
+                Double adultLiteracyRate = (Double) rows.get(3);
+                renderer.row((String) rows.get(0), (String) rows.get(1),
+                        internetUsers == null ? 0 : internetUsers, internetUsers != null,
+                        adultLiteracyRate == null ? 0 : adultLiteracyRate, adultLiteracyRate != null);
+            }
+            renderer.finish();
+        } finally {
+            rows.close();
+        }
+        return renderer.getRowCount();
+    }
+
+    /*
+     takes an indicator code, or null for every indicator
+     writes its observations by country and year and finishes the renderer
+     returns the number of rows written
+     */
+    public static long values(Session session, String indicator, ValueTableRenderer renderer) {
+        // in the order of idx_indicator_value_series, or of the primary key for all of them
+        Query query = indicator == null
+                ? session.createQuery("select v.indicator, v.country, v.year, v.value from IndicatorValue v " +
+                        "order by v.indicator, v.country, v.year")
+                : session.createQuery("select v.indicator, v.country, v.year, v.value from IndicatorValue v " +
+                        "where v.indicator = :indicator order by v.country, v.year")
+                        .setParameter("indicator", indicator);
+        ScrollableResults rows = scroll(query);
+        try {
+            renderer.header();
+            while (rows.next()) {
+                renderer.row((String) rows.get(0), (String) rows.get(1),
+                        (Integer) rows.get(2), (Double) rows.get(3));
+            }
+            renderer.finish();
+        } finally {
+            rows.close();
+        }
+        return renderer.getRowCount();
+    }
+
+    private static ScrollableResults scroll(Query query) {
+        return query.setReadOnly(true)
+                .setFetchSize(FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+}
@@ -0,0 +1,393 @@
+package com.teamtreehouse.dbanalysis.data;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+ saves, updates and deletes queued for one background thread, which
+ commits them in groups instead of one transaction each.
+
+ a group is whatever is queued within the interval after its first
+ write, up to the batch size, written in one session and committed
+ once. repeated edits to the same country in a group are applied to
+ the same entity and written as one row. the listener hears about each
+ write after its group commits, in the order they were queued, or that
+ it failed.
+
+ the queue is bounded: once it is full, queueing waits until the
+ writer catches up. flush() waits until everything queued before it is
+ committed, close() flushes and stops the writer, and should run before
+ the SessionFactory closes (a shutdown hook is a good place).
+
+ when a group fails to commit, its writes are tried again one at a
+ time through a CountryWriter, so one bad write does not lose the rest
+ and conflicts with other writers are retried as usual. an update or
+ delete queued with the version it was based on fails on its own when
+ the row has moved on, and the rest of its group still commits.
+ */
+public class WriteBehind {
+
+    /*
+     what the owner is told once writes are durable
+     */
+    public interface Listener {
+        void saved(Country country);
+
+        void updated(String previousCode, Country country);
+
+        /*
+         takes the code and the @Version of the row that was deleted
+         */
+        void deleted(String code, int version);
+
+        /*
+         takes what the write was and why it could not be made
+         */
+        void failed(String write, RuntimeException e);
+    }
+
+    private final SessionFactory sessionFactory;
+    private final CountryWriter writer;
+    private final Listener listener;
+    private final int maxBatch;
+    private final long intervalNanos;
+    private final BlockingQueue<Write> queue;
+    private final Write stop = new Write(Kind.STOP, null, null, null, null);
+    // guarded by this, so nothing can be queued behind the stop
+    private boolean closed;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /*
+     takes the most writes waiting at once, the most in one transaction,
+     and how long the first write of a group waits for others to join it
+     */
+    public WriteBehind(SessionFactory sessionFactory, CountryWriter writer, Listener listener,
+                       int capacity, int maxBatch, long intervalMillis) {
+        if (capacity < 1 || maxBatch < 1 || intervalMillis < 0) throw new IllegalArgumentException();
+        this.sessionFactory = sessionFactory;
+        this.writer = writer;
+        this.listener = listener;
+        this.maxBatch = maxBatch;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Thread thread = new Thread(this::run, "write-behind");
+        // close() is what makes the writes durable, the thread alone must not keep the JVM up
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void save(Country country) {
+        put(new Write(Kind.SAVE, country.getCode(), country, null, null));
+    }
+
+    /*
+     takes a code and the change to make to that country, as CountryWriter.update
+     */
+    public void update(String code, Consumer<Country> change) {
+        put(new Write(Kind.UPDATE, code, null, change, null));
+    }
+
+    /*
+     takes a code, the @Version the change was based on and the change.
+     a conflict is reported to the listener as a failure
+     */
+    public void update(String code, int expectedVersion, Consumer<Country> change) {
+        put(new Write(Kind.UPDATE, code, null, change, expectedVersion));
+    }
+
+    public void delete(String code) {
+        put(new Write(Kind.DELETE, code, null, null, null));
+    }
+
+    public void delete(String code, int expectedVersion) {
+        put(new Write(Kind.DELETE, code, null, null, expectedVersion));
+    }
+
+    /*
+     waits until every write queued before the call has been committed or has failed
+     */
+    public void flush() {
+        Write marker;
+        synchronized (this) {
+            if (closed) {
+                marker = stop;
+            } else {
+                marker = new Write(Kind.FLUSH, null, null, null, null);
+                enqueue(marker);
+            }
+        }
+        awaitUninterruptibly(marker.done);
+    }
+
+    /*
+     flushes and stops the writer, later writes are refused
+     */
+    public void close() {
+        synchronized (this) {
+            if (!closed) {
+                enqueue(stop);
+                closed = true;
+            }
+        }
+        awaitUninterruptibly(stop.done);
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    private synchronized void put(Write write) {
+        if (closed) throw new IllegalStateException("the write-behind queue is closed");
+        enqueue(write);
+    }
+
+    /*
+     the writer thread never takes the lock, so it keeps making room while this waits
+     */
+    private void enqueue(Write write) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                // back-pressure: waits here while the queue is full
+                queue.put(write);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void run() {
+        List<Write> group = new ArrayList<>(maxBatch);
+        while (true) {
+            Write first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            Write marker = first.isMarker() ? first : null;
+            if (marker == null) {
+                group.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                while (group.size() < maxBatch) {
+                    Write next;
+                    try {
+                        next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    if (next == null) break;
+                    // a flush or stop ends the group early
+                    if (next.isMarker()) {
+                        marker = next;
+                        break;
+                    }
+                    group.add(next);
+                }
+                try {
+                    write(group);
+                } catch (RuntimeException e) {
+                    // the thread has to outlive anything, or flush() would wait forever
+                    for (Write write : group) {
+                        failures.incrementAndGet();
+                        listener.failed(write.toString(), e);
+                    }
+                }
+                group.clear();
+            }
+            if (marker != null) {
+                marker.done.countDown();
+                if (marker.kind == Kind.STOP) return;
+            }
+        }
+    }
+
+    private void write(List<Write> group) {
+        Session session = sessionFactory.openSession();
+        List<Runnable> hooks = new ArrayList<>(group.size());
+        List<Write> rejected = new ArrayList<>();
+        List<RuntimeException> reasons = new ArrayList<>();
+        try {
+            session.beginTransaction();
+            for (Write write : group) {
+                // nothing is written for a missing row or a conflict, so the rest of the group can still commit
+                Runnable hook;
+                try {
+                    hook = write.apply(session);
+                } catch (CountryWriter.ConflictException e) {
+                    rejected.add(write);
+                    reasons.add(e);
+                    continue;
+                }
+                if (hook == null) {
+                    rejected.add(write);
+                    reasons.add(new MissingRowException(write));
+                } else {
+                    hooks.add(hook);
+                }
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            // a database error, or a change that threw
+            rollback(session);
+            session.close();
+            writeOneAtATime(group);
+            return;
+        } finally {
+            if (session.isOpen()) session.close();
+        }
+        commits.incrementAndGet();
+        written.addAndGet(hooks.size());
+        for (Runnable hook : hooks) {
+            hook.run();
+        }
+        for (int i = 0; i < rejected.size(); i++) {
+            failures.incrementAndGet();
+            listener.failed(rejected.get(i).toString(), reasons.get(i));
+        }
+    }
+
+    private void writeOneAtATime(List<Write> group) {
+        for (Write write : group) {
+            try {
+                Runnable hook = write.applyAlone();
+                if (hook == null) throw new MissingRowException(write);
+                commits.incrementAndGet();
+                written.incrementAndGet();
+                hook.run();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                listener.failed(write.toString(), e);
+            }
+        }
+    }
+
+    private static void rollback(Session session) {
+        if (session.getTransaction().getStatus().canRollback()) {
+            session.getTransaction().rollback();
+        }
+    }
+
+    private enum Kind { SAVE, UPDATE, DELETE, FLUSH, STOP }
+
+    private class Write {
+        private final Kind kind;
+        private final String code;
+        private final Country country;
+        private final Consumer<Country> change;
+        // the @Version an update or delete was based on, or null for whatever is there
+        private final Integer expectedVersion;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Write(Kind kind, String code, Country country, Consumer<Country> change, Integer expectedVersion) {
+            this.kind = kind;
+            this.code = code;
+            this.country = country;
+            this.change = change;
+            this.expectedVersion = expectedVersion;
+        }
+
+        private boolean isMarker() {
+            return kind == Kind.FLUSH || kind == Kind.STOP;
+        }
+
+        /*
+         makes the write in a transaction that is already open
+         returns what to tell the listener once it commits, or null when the country is not there
+         */
+        private Runnable apply(Session session) {
+            switch (kind) {
+                case SAVE:
+                    session.save(country);
+                    return () -> listener.saved(country);
+                case UPDATE:
+                    Country changed = CountryWriter.update(session, code, expectedVersion, change);
+                    return changed == null ? null : () -> listener.updated(code, changed);
+                default:
+                    Country deleted = CountryWriter.delete(session, code, expectedVersion);
+                    return deleted == null ? null : () -> listener.deleted(code, deleted.getVersion());
+            }
+        }
+
+        /*
+         makes the write in its own transaction, retrying conflicts
+         */
+        private Runnable applyAlone() {
+            switch (kind) {
+                case SAVE:
+                    Session session = sessionFactory.openSession();
+                    try {
+                        session.beginTransaction();
+                        session.save(country);
+                        session.getTransaction().commit();
+                    } catch (HibernateException e) {
+                        rollback(session);
+                        throw e;
+                    } finally {
+                        session.close();
+                    }
+                    return () -> listener.saved(country);
+                case UPDATE:
+                    Country changed = writer.update(code, expectedVersion, change);
+                    return changed == null ? null : () -> listener.updated(code, changed);
+                default:
+                    Country deleted = writer.delete(code, expectedVersion);
+                    return deleted == null ? null : () -> listener.deleted(code, deleted.getVersion());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind.name().toLowerCase() + " " + code;
+        }
+    }
+
+    private static class MissingRowException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private MissingRowException(Write write) {
+            super("no country with code " + write.code);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.teamtreehouse.dbanalysis.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+import com.teamtreehouse.dbanalysis.render.Json;
+import com.teamtreehouse.dbanalysis.render.JsonTableRenderer;
+import com.teamtreehouse.dbanalysis.render.TableRenderer;
+import com.teamtreehouse.dbanalysis.stats.CountryStats;
+import com.teamtreehouse.dbanalysis.stats.Distribution;
+import com.teamtreehouse.dbanalysis.stats.Extreme;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ a read-only json api over the Country table:
+
+   GET /countries         every country
+   GET /countries/{code}  one country, 404 when there is none
+   GET /stats             the same stats as the stats screen
+
+ requests never open a Session. they are answered from one shared view
+ of a CountrySnapshot, with the list and stats already rendered to
+ bytes. invalidate() after a write marks the view stale, and the next
+ request loads a fresh snapshot once for everyone.
+ */
+public class QueryServer {
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Supplier<CountrySnapshot> source;
+
+    private volatile View view;
+    // bumped by every invalidate(), so a view built from rows read
+    // before a write is never taken for a fresh one
+    private final AtomicLong generation = new AtomicLong();
+
+    public QueryServer(int port, Supplier<CountrySnapshot> source) throws IOException {
+        this.source = source;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/countries", this::countries);
+        server.createContext("/stats", this::stats);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+     call after a write has committed
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        view = null;
+    }
+
+    private View view() {
+        View current = view;
+        if (current == null) {
+            synchronized (this) {
+                current = view;
+                if (current == null) {
+                    long loading = generation.get();
+                    current = new View(source.get());
+                    if (loading == generation.get()) view = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void countries(HttpExchange exchange) throws IOException {
+        if (!isGet(exchange)) return;
+        String path = exchange.getRequestURI().getPath();
+        View current = view();
+        if (path.equals("/countries") || path.equals("/countries/")) {
+            send(exchange, 200, current.countries);
+            return;
+        }
+        String code = path.substring("/countries/".length());
+        Integer row = current.rowByCode.get(code.toUpperCase(Locale.ROOT));
+        if (row == null) {
+            send(exchange, 404, error("no country with code " + code));
+        } else {
+            send(exchange, 200, current.country(row));
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        if (!isGet(exchange)) return;
+        send(exchange, 200, view().stats);
+    }
+
+    private static boolean isGet(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET") || method.equals("HEAD")) return true;
+        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+        send(exchange, 405, error("read only, use GET"));
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static byte[] error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.appendString(sb, message).append("}\n");
+        return bytes(sb);
+    }
+
+    private static byte[] bytes(CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     a thread per request on a virtual thread when the runtime has them
+     (Java 21 and up), otherwise a fixed pool sized to the machine. the
+     build targets Java 8, so the virtual thread factory is looked up
+     rather than called directly.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        }
+    }
+
+    /*
+     everything the handlers need from one snapshot, built once
+     and never changed, so any number of requests can share it
+     */
+    private static class View {
+        private final CountrySnapshot snapshot;
+        private final Map<String, Integer> rowByCode;
+        private final byte[] countries;
+        private final byte[] stats;
+
+        private View(CountrySnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.rowByCode = new HashMap<>(snapshot.size() * 2);
+            StringWriter list = new StringWriter();
+            TableRenderer renderer = new JsonTableRenderer(list);
+            renderer.header();
+            for (int i = 0; i < snapshot.size(); i++) {
+                rowByCode.put(snapshot.getCode(i).toUpperCase(Locale.ROOT), i);
+                renderer.row(snapshot.getCode(i), snapshot.getName(i),
+                        snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                        snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
+            }
+            renderer.finish();
+            this.countries = bytes(list.getBuffer());
+            this.stats = bytes(stats(CountryStats.of(snapshot)));
+        }
+
+        private byte[] country(int row) {
+            StringBuilder sb = new StringBuilder(96);
+            sb.append("{\"code\":");
+            Json.appendString(sb, snapshot.getCode(row));
+            sb.append(",\"name\":");
+            Json.appendString(sb, snapshot.getName(row));
+            sb.append(",\"internetUsers\":");
+            Json.appendNumber(sb, snapshot.getInternetUsers(row), snapshot.hasInternetUsers(row));
+            sb.append(",\"adultLiteracyRate\":");
+            Json.appendNumber(sb, snapshot.getAdultLiteracyRate(row), snapshot.hasAdultLiteracyRate(row));
+            return bytes(sb.append("}\n"));
+        }
+
+        private static StringBuilder stats(CountryStats stats) {
+            StringBuilder sb = new StringBuilder(1024);
+            sb.append("{\"count\":").append(stats.getCount())
+                    .append(",\"internetCount\":").append(stats.getInternetCount())
+                    .append(",\"literacyCount\":").append(stats.getLiteracyCount())
+                    .append(",\"bothCount\":").append(stats.getBothCount());
+            extreme(sb, "maxInternet", stats.getMaxInternet());
+            extreme(sb, "maxInternetBoth", stats.getMaxInternetBoth());
+            extreme(sb, "minInternet", stats.getMinInternet());
+            extreme(sb, "minInternetBoth", stats.getMinInternetBoth());
+            extreme(sb, "maxLiteracy", stats.getMaxLiteracy());
+            extreme(sb, "maxLiteracyBoth", stats.getMaxLiteracyBoth());
+            extreme(sb, "minLiteracy", stats.getMinLiteracy());
+            extreme(sb, "minLiteracyBoth", stats.getMinLiteracyBoth());
+            sb.append(",\"correlation\":");
+            Json.appendNumber(sb, stats.getCorrelation().coefficient(), true);
+            distribution(sb, "internetPercentiles", stats.getInternetDistribution());
+            distribution(sb, "literacyPercentiles", stats.getLiteracyDistribution());
+            return sb.append("}\n");
+        }
+
+        private static void distribution(StringBuilder sb, String key, Distribution distribution) {
+            sb.append(",\"").append(key).append("\":");
+            if (distribution == null) {
+                sb.append("null");
+                return;
+            }
+            double[] q = distribution.getQuantiles(0.10, 0.50, 0.90, 0.99);
+            boolean present = distribution.getCount() > 0;
+            sb.append("{\"p10\":");
+            Json.appendNumber(sb, q[0], present);
+            sb.append(",\"median\":");
+            Json.appendNumber(sb, q[1], present);
+            sb.append(",\"p90\":");
+            Json.appendNumber(sb, q[2], present);
+            sb.append(",\"p99\":");
+            Json.appendNumber(sb, q[3], present);
+            sb.append('}');
+        }
+
+        private static void extreme(StringBuilder sb, String key, Extreme extreme) {
+            sb.append(",\"").append(key).append("\":");
+            if (extreme == null) {
+                sb.append("null");
+                return;
+            }
+            sb.append("{\"name\":");
+            Json.appendString(sb, extreme.getName());
+            sb.append(",\"internetUsers\":");
+            Json.appendNumber(sb, extreme.getInternetUsers(), extreme.hasInternetUsers());
+            sb.append(",\"adultLiteracyRate\":");
+            Json.appendNumber(sb, extreme.getAdultLiteracyRate(), extreme.hasAdultLiteracyRate());
+            sb.append('}');
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.teamtreehouse.dbanalysis.metrics;
+
+import org.hibernate.stat.Statistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ a latency histogram per named operation, plus a report that puts them
+ next to the Hibernate statistics for the same run.
+ names read as "menu display" or "db save", and the report lists them
+ in name order so each kind stays together.
+ */
+public class Metrics {
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public void record(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+    }
+
+    public <T> T time(String name, Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            record(name, start);
+        }
+    }
+
+    public void time(String name, Runnable operation) {
+        long start = System.nanoTime();
+        try {
+            operation.run();
+        } finally {
+            record(name, start);
+        }
+    }
+
+    public void reset(Statistics statistics) {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        if (statistics != null) statistics.clear();
+    }
+
+    /*
+     takes the session factory statistics, or null to leave them out
+     returns the latency table followed by the statement, entity and cache counts
+     */
+    public String report(Statistics statistics) {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append(String.format("%-24s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            if (h.getCount() == 0) continue;
+            sb.append(String.format("%-24s %8d %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(),
+                    h.getCount(),
+                    h.getMean() / 1_000_000.0,
+                    millis(h.getValueAtQuantile(0.50)),
+                    millis(h.getValueAtQuantile(0.90)),
+                    millis(h.getValueAtQuantile(0.99)),
+                    millis(h.getValueAtQuantile(0.999)),
+                    millis(h.getMax())));
+        }
+        if (statistics == null || !statistics.isStatisticsEnabled()) return sb.toString();
+
+        sb.append(String.format("%nStatements prepared: %d, queries run: %d, slowest query %d ms: %s%n",
+                statistics.getPrepareStatementCount(),
+                statistics.getQueryExecutionCount(),
+                statistics.getQueryExecutionMaxTime(),
+                statistics.getQueryExecutionMaxTimeQueryString()));
+        sb.append(String.format("Entities loaded: %d, fetched: %d, inserted: %d, updated: %d, deleted: %d%n",
+                statistics.getEntityLoadCount(),
+                statistics.getEntityFetchCount(),
+                statistics.getEntityInsertCount(),
+                statistics.getEntityUpdateCount(),
+                statistics.getEntityDeleteCount()));
+        sb.append(String.format("Sessions opened: %d, connections: %d, flushes: %d, " +
+                        "transactions: %d (%d committed), optimistic failures: %d%n",
+                statistics.getSessionOpenCount(),
+                statistics.getConnectCount(),
+                statistics.getFlushCount(),
+                statistics.getTransactionCount(),
+                statistics.getSuccessfulTransactionCount(),
+                statistics.getOptimisticFailureCount()));
+        sb.append(String.format("Second-level cache hits: %d, misses: %d, puts: %d; " +
+                        "query cache hits: %d, misses: %d%n",
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount(),
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount()));
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
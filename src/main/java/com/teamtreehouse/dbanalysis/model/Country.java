@@ -1,13 +1,29 @@
 package com.teamtreehouse.dbanalysis.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "country")
+// code breaks ties so bottom and range queries are read in index order.
+// the descending twins are made by RankQuery.createIndexes, 5.1 drops "desc" here
+@Table(indexes = {
+        @Index(name = "idx_country_internet_users_rank", columnList = "internetUsers, code"),
+        @Index(name = "idx_country_adult_literacy_rate_rank", columnList = "adultLiteracyRate, code")
+})
 public class Country {
+    // sizes of the existing code and name columns
+    public static final int CODE_LENGTH = 3;
+    public static final int NAME_LENGTH = 32;
+
     @Id
+    @Column(length = CODE_LENGTH)
     private String code;
 
-    @Column
+    @Column(length = NAME_LENGTH)
     private String name;
 
     @Column
@@ -16,6 +32,12 @@ public class Country {
     @Column
     private Double adultLiteracyRate;
 
+    // bumped on every update, a write based on an older read fails instead of overwriting.
+    // the default fills the column for rows that were there before it was added.
+    @Version
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int version;
+
     public Country() {}
 
     public Country(CountryBuilder builder) {
@@ -23,6 +45,7 @@ public class Country {
         this.name = builder.name;
         this.internetUsers = builder.internetUsers;
         this.adultLiteracyRate = builder.adultLiteracyRate;
+        this.version = builder.version;
     }
 
     @Override
@@ -32,6 +55,7 @@ public class Country {
                 ", name='" + name + '\'' +
                 ", internetUsers=" + internetUsers +
                 ", adultLiteracyRate=" + adultLiteracyRate +
+                ", version=" + version +
                 '}';
     }
 
@@ -68,11 +92,16 @@ public class Country {
         this.adultLiteracyRate = adultLiteracyRate;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     public static class CountryBuilder {
         private String code;
         private String name;
         private double internetUsers;
         private double adultLiteracyRate;
+        private int version;
 
         public CountryBuilder(String code, String name) {
             this.code = code;
@@ -89,6 +118,14 @@ public class Country {
             return this;
         }
 
+        /*
+         for a copy of a row that was read, so a write based on it can be checked against the row
+         */
+        public CountryBuilder withVersion(int version) {
+            this.version = version;
+            return this;
+        }
+
         public Country build() {
             return new Country(this);
         }
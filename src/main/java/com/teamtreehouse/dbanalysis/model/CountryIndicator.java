@@ -0,0 +1,46 @@
+package com.teamtreehouse.dbanalysis.model;
+
+/*
+ the two indicator columns of Country, for commands that work on
+ either one: its property name in queries and how to read it from a
+ snapshot. a null or 0.00 value counts as not recorded.
+ */
+public enum CountryIndicator {
+    INTERNET_USERS("internetUsers", "Internet Users"),
+    ADULT_LITERACY_RATE("adultLiteracyRate", "Literacy Rate");
+
+    private final String property;
+    private final String title;
+
+    CountryIndicator(String property, String title) {
+        this.property = property;
+        this.title = title;
+    }
+
+    /*
+     takes what a user typed, such as internet or literacy
+     returns the indicator, or null when it is neither
+     */
+    public static CountryIndicator parse(String text) {
+        String word = text.trim().toLowerCase();
+        if (word.startsWith("internet")) return INTERNET_USERS;
+        if (word.startsWith("literacy") || word.startsWith("adult")) return ADULT_LITERACY_RATE;
+        return null;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public double value(CountrySnapshot snapshot, int row) {
+        return this == INTERNET_USERS ? snapshot.getInternetUsers(row) : snapshot.getAdultLiteracyRate(row);
+    }
+
+    public boolean isRecorded(CountrySnapshot snapshot, int row) {
+        return this == INTERNET_USERS ? snapshot.hasInternetUsers(row) : snapshot.hasAdultLiteracyRate(row);
+    }
+}
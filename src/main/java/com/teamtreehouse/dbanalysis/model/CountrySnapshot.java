@@ -0,0 +1,170 @@
+package com.teamtreehouse.dbanalysis.model;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntFunction;
+
+/*
+ read-only, column per field copy of the Country table.
+ indicator values are kept as primitive doubles; a presence bitmap
+ marks which ones were recorded. a null or 0.00 value counts as not
+ recorded, since 0.00 is what the add flow asks for when it is unknown.
+
+ the columns are nio buffers, over arrays when built here and over a
+ mapped file when read by SnapshotFile, so the same analysis code runs
+ over either without copying. codes and names are looked up by row and
+ only turned into Strings when asked for.
+ */
+public class CountrySnapshot {
+    private final int size;
+    private final IntFunction<String> code;
+    private final IntFunction<String> name;
+    private final DoubleBuffer internetUsers;
+    private final DoubleBuffer adultLiteracyRate;
+    private final LongBuffer hasInternetUsers;
+    private final LongBuffer hasAdultLiteracyRate;
+
+    private CountrySnapshot(Builder builder) {
+        this.size = builder.size;
+        String[] code = Arrays.copyOf(builder.code, size);
+        String[] name = Arrays.copyOf(builder.name, size);
+        this.code = row -> code[row];
+        this.name = row -> name[row];
+        this.internetUsers = DoubleBuffer.wrap(Arrays.copyOf(builder.internetUsers, size));
+        this.adultLiteracyRate = DoubleBuffer.wrap(Arrays.copyOf(builder.adultLiteracyRate, size));
+        this.hasInternetUsers = LongBuffer.wrap(Arrays.copyOf(builder.hasInternetUsers, words(size)));
+        this.hasAdultLiteracyRate = LongBuffer.wrap(Arrays.copyOf(builder.hasAdultLiteracyRate, words(size)));
+    }
+
+    private CountrySnapshot(int size, IntFunction<String> code, IntFunction<String> name,
+                            DoubleBuffer internetUsers, DoubleBuffer adultLiteracyRate,
+                            LongBuffer hasInternetUsers, LongBuffer hasAdultLiteracyRate) {
+        this.size = size;
+        this.code = code;
+        this.name = name;
+        this.internetUsers = internetUsers;
+        this.adultLiteracyRate = adultLiteracyRate;
+        this.hasInternetUsers = hasInternetUsers;
+        this.hasAdultLiteracyRate = hasAdultLiteracyRate;
+    }
+
+    /*
+     takes columns that already exist somewhere else, such as a mapped
+     file: the code and name of a row, one value per row for each
+     indicator and one bit per row (row 0 in the lowest bit of the first
+     long) for whether it was recorded. the buffers are used as they are.
+     */
+    public static CountrySnapshot ofColumns(int size, IntFunction<String> code, IntFunction<String> name,
+                                            DoubleBuffer internetUsers, DoubleBuffer adultLiteracyRate,
+                                            LongBuffer hasInternetUsers, LongBuffer hasAdultLiteracyRate) {
+        if (internetUsers.limit() < size || adultLiteracyRate.limit() < size
+                || hasInternetUsers.limit() < words(size) || hasAdultLiteracyRate.limit() < words(size)) {
+            throw new IllegalArgumentException("columns are shorter than " + size + " rows");
+        }
+        return new CountrySnapshot(size, code, name,
+                internetUsers, adultLiteracyRate, hasInternetUsers, hasAdultLiteracyRate);
+    }
+
+    public static CountrySnapshot of(Collection<Country> countries) {
+        Builder builder = new Builder(countries.size());
+        for (Country c : countries) {
+            builder.add(c.getCode(), c.getName(), c.getInternetUsers(), c.getAdultLiteracyRate());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getCode(int row) {
+        return code.apply(row);
+    }
+
+    public String getName(int row) {
+        return name.apply(row);
+    }
+
+    public double getInternetUsers(int row) {
+        return internetUsers.get(row);
+    }
+
+    public boolean hasInternetUsers(int row) {
+        return isSet(hasInternetUsers, row);
+    }
+
+    public double getAdultLiteracyRate(int row) {
+        return adultLiteracyRate.get(row);
+    }
+
+    public boolean hasAdultLiteracyRate(int row) {
+        return isSet(hasAdultLiteracyRate, row);
+    }
+
+    private static boolean isSet(LongBuffer bits, int row) {
+        return (bits.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    /*
+     returns how many longs a presence bitmap for that many rows takes
+     */
+    public static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    public static class Builder {
+        private int size;
+        private String[] code;
+        private String[] name;
+        private double[] internetUsers;
+        private double[] adultLiteracyRate;
+        private long[] hasInternetUsers;
+        private long[] hasAdultLiteracyRate;
+
+        public Builder() {
+            this(256);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(expectedRows, 16);
+            code = new String[capacity];
+            name = new String[capacity];
+            internetUsers = new double[capacity];
+            adultLiteracyRate = new double[capacity];
+            hasInternetUsers = new long[words(capacity)];
+            hasAdultLiteracyRate = new long[words(capacity)];
+        }
+
+        public Builder add(String code, String name, Double internetUsers, Double adultLiteracyRate) {
+            if (size == this.code.length) grow();
+            int row = size++;
+            this.code[row] = code;
+            this.name[row] = name;
+            if (internetUsers != null && internetUsers != 0.00) {
+                this.internetUsers[row] = internetUsers;
+                hasInternetUsers[row >>> 6] |= 1L << row;
+            }
+            if (adultLiteracyRate != null && adultLiteracyRate != 0.00) {
+                this.adultLiteracyRate[row] = adultLiteracyRate;
+                hasAdultLiteracyRate[row >>> 6] |= 1L << row;
+            }
+            return this;
+        }
+
+        private void grow() {
+            int capacity = code.length * 2;
+            code = Arrays.copyOf(code, capacity);
+            name = Arrays.copyOf(name, capacity);
+            internetUsers = Arrays.copyOf(internetUsers, capacity);
+            adultLiteracyRate = Arrays.copyOf(adultLiteracyRate, capacity);
+            hasInternetUsers = Arrays.copyOf(hasInternetUsers, words(capacity));
+            hasAdultLiteracyRate = Arrays.copyOf(hasAdultLiteracyRate, words(capacity));
+        }
+
+        public CountrySnapshot build() {
+            return new CountrySnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.teamtreehouse.dbanalysis.model;
+
+import java.util.Arrays;
+
+/*
+ one indicator over a span of years, held as a primitive double[] per
+ country with one slot per year. a year without a value holds NaN.
+ countries are kept sorted by code so two series can be lined up.
+ */
+public class IndicatorSeries {
+    private final String indicator;
+    private final int firstYear;
+    private final int lastYear;
+    private final String[] countries;
+    private final double[][] values;
+
+    private IndicatorSeries(Builder builder) {
+        this.indicator = builder.indicator;
+        this.firstYear = builder.firstYear;
+        this.lastYear = builder.lastYear;
+        this.countries = Arrays.copyOf(builder.countries, builder.size);
+        this.values = Arrays.copyOf(builder.values, builder.size);
+    }
+
+    public String getIndicator() {
+        return indicator;
+    }
+
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    public int getLastYear() {
+        return lastYear;
+    }
+
+    public int size() {
+        return countries.length;
+    }
+
+    public String getCountry(int row) {
+        return countries[row];
+    }
+
+    /*
+     returns the yearly values of one country, index 0 is firstYear.
+     the array is shared, callers must not change it.
+     */
+    public double[] getValues(int row) {
+        return values[row];
+    }
+
+    /*
+     returns the row of a country code, or a negative number
+     */
+    public int indexOf(String country) {
+        return Arrays.binarySearch(countries, country);
+    }
+
+    public static class Builder {
+        private final String indicator;
+        private final int firstYear;
+        private final int lastYear;
+        private int size;
+        private String[] countries = new String[64];
+        private double[][] values = new double[64][];
+
+        public Builder(String indicator, int firstYear, int lastYear) {
+            if (lastYear < firstYear) throw new IllegalArgumentException("last year is before first year");
+            this.indicator = indicator;
+            this.firstYear = firstYear;
+            this.lastYear = lastYear;
+        }
+
+        /*
+         values must arrive grouped by country, in code order
+         */
+        public Builder add(String country, int year, double value) {
+            if (year < firstYear || year > lastYear) return this;
+            if (size == 0 || !countries[size - 1].equals(country)) {
+                if (size > 0 && countries[size - 1].compareTo(country) > 0) {
+                    throw new IllegalStateException("Countries out of order: " + country);
+                }
+                if (size == countries.length) {
+                    countries = Arrays.copyOf(countries, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                double[] years = new double[lastYear - firstYear + 1];
+                Arrays.fill(years, Double.NaN);
+                countries[size] = country;
+                values[size] = years;
+                size++;
+            }
+            values[size - 1][year - firstYear] = value;
+            return this;
+        }
+
+        public IndicatorSeries build() {
+            return new IndicatorSeries(this);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.teamtreehouse.dbanalysis.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/*
+ one World Bank observation: the value of an indicator for a country in
+ a year. only recorded values are stored, a missing year has no row.
+ */
+@Entity
+@IdClass(IndicatorValue.Key.class)
+@Table(indexes = {
+        @Index(name = "idx_indicator_value_series", columnList = "indicator, country, year"),
+        @Index(name = "idx_indicator_value_year", columnList = "indicator, year")
+})
+public class IndicatorValue {
+    public static final int INDICATOR_LENGTH = 32;
+
+    @Id
+    @Column(length = INDICATOR_LENGTH)
+    private String indicator;
+
+    @Id
+    @Column(length = Country.CODE_LENGTH)
+    private String country;
+
+    @Id
+    private int year;
+
+    @Column(nullable = false)
+    private double value;
+
+    public IndicatorValue() {}
+
+    public IndicatorValue(IndicatorValueBuilder builder) {
+        this.indicator = builder.indicator;
+        this.country = builder.country;
+        this.year = builder.year;
+        this.value = builder.value;
+    }
+
+    @Override
+    public String toString() {
+        return "IndicatorValue{" +
+                "indicator='" + indicator + '\'' +
+                ", country='" + country + '\'' +
+                ", year=" + year +
+                ", value=" + value +
+                '}';
+    }
+
+    public String getIndicator() {
+        return indicator;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String indicator;
+        private String country;
+        private int year;
+
+        public Key() {}
+
+        public Key(String indicator, String country, int year) {
+            this.indicator = indicator;
+            this.country = country;
+            this.year = year;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return year == key.year &&
+                    Objects.equals(indicator, key.indicator) &&
+                    Objects.equals(country, key.country);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(indicator, country, year);
+        }
+    }
+
+    public static class IndicatorValueBuilder {
+        private String indicator;
+        private String country;
+        private int year;
+        private double value;
+
+        public IndicatorValueBuilder(String indicator, String country, int year) {
+            this.indicator = indicator;
+            this.country = country;
+            this.year = year;
+        }
+
+        public IndicatorValueBuilder withValue(double value) {
+            this.value = value;
+            return this;
+        }
+
+        public IndicatorValue build() {
+            return new IndicatorValue(this);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.Writer;
+
+/*
+ one line per country with the same header the csv import reads back:
+ code,name,internetUsers,adultLiteracyRate. missing values are empty.
+ */
+public class CsvTableRenderer extends TableRenderer {
+
+    public CsvTableRenderer(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder sb) {
+        sb.append("code,name,internetUsers,adultLiteracyRate\n");
+    }
+
+    @Override
+    protected void appendRow(StringBuilder sb, long index, String code, String name,
+                             double internetUsers, boolean hasInternetUsers,
+                             double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        appendField(sb, code).append(',');
+        appendField(sb, name).append(',');
+        if (hasInternetUsers) sb.append(internetUsers);
+        sb.append(',');
+        if (hasAdultLiteracyRate) sb.append(adultLiteracyRate);
+        sb.append('\n');
+    }
+
+    static StringBuilder appendField(StringBuilder sb, String value) {
+        if (value == null) return sb;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) return sb.append(value);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') sb.append('"');
+            sb.append(ch);
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,48 @@
+package com.teamtreehouse.dbanalysis.render;
+
+/*
+ writes numbers with two decimal places straight into a StringBuilder,
+ so rendering a row does not parse a format string or create a String.
+ */
+public class Decimals {
+    public static final String MISSING = "--";
+
+    /*
+     takes a builder and a value
+     appends the value rounded half up to two decimal places
+     */
+    public static StringBuilder appendFixed2(StringBuilder sb, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+            return sb.append(value);
+        }
+        long cents = Math.round(value * 100);
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        long whole = cents / 100;
+        int fraction = (int) (cents % 100);
+        sb.append(whole).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    /*
+     appends the value with two decimals, or "--" when it was not recorded
+     */
+    public static StringBuilder appendFixed2(StringBuilder sb, double value, boolean present) {
+        return present ? appendFixed2(sb, value) : sb.append(MISSING);
+    }
+
+    public static String fixed2(double value, boolean present) {
+        return appendFixed2(new StringBuilder(12), value, present).toString();
+    }
+
+    /*
+     pads the builder with spaces from start until it is width chars long
+     */
+    public static StringBuilder padTo(StringBuilder sb, int start, int width) {
+        for (int i = sb.length() - start; i < width; i++) sb.append(' ');
+        return sb;
+    }
+}
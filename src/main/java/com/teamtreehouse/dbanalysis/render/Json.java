@@ -0,0 +1,44 @@
+package com.teamtreehouse.dbanalysis.render;
+
+/*
+ appends json values to a StringBuilder
+ */
+public class Json {
+
+    public static StringBuilder appendNumber(StringBuilder sb, double value, boolean present) {
+        if (!present || Double.isNaN(value) || Double.isInfinite(value)) return sb.append("null");
+        return sb.append(value);
+    }
+
+    public static StringBuilder appendString(StringBuilder sb, String value) {
+        if (value == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,33 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.Writer;
+
+/*
+ one json object per line and nothing around them, so a file of any
+ size can be read back a line at a time. missing values are null.
+ */
+public class JsonLinesTableRenderer extends TableRenderer {
+
+    public JsonLinesTableRenderer(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder sb) {
+    }
+
+    @Override
+    protected void appendRow(StringBuilder sb, long index, String code, String name,
+                             double internetUsers, boolean hasInternetUsers,
+                             double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        sb.append("{\"code\":");
+        Json.appendString(sb, code);
+        sb.append(",\"name\":");
+        Json.appendString(sb, name);
+        sb.append(",\"internetUsers\":");
+        Json.appendNumber(sb, internetUsers, hasInternetUsers);
+        sb.append(",\"adultLiteracyRate\":");
+        Json.appendNumber(sb, adultLiteracyRate, hasAdultLiteracyRate);
+        sb.append("}\n");
+    }
+}
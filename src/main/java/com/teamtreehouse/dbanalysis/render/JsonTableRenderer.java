@@ -0,0 +1,40 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.Writer;
+
+/*
+ a json array with one object per country. missing values are null.
+ */
+public class JsonTableRenderer extends TableRenderer {
+
+    public JsonTableRenderer(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder sb) {
+        sb.append('[');
+    }
+
+    @Override
+    protected void appendRow(StringBuilder sb, long index, String code, String name,
+                             double internetUsers, boolean hasInternetUsers,
+                             double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        if (index > 0) sb.append(',');
+        sb.append("\n  {\"code\":");
+        Json.appendString(sb, code);
+        sb.append(",\"name\":");
+        Json.appendString(sb, name);
+        sb.append(",\"internetUsers\":");
+        Json.appendNumber(sb, internetUsers, hasInternetUsers);
+        sb.append(",\"adultLiteracyRate\":");
+        Json.appendNumber(sb, adultLiteracyRate, hasAdultLiteracyRate);
+        sb.append('}');
+    }
+
+    @Override
+    protected void appendFooter(StringBuilder sb, long rowCount) {
+        sb.append(rowCount > 0 ? "\n]\n" : "]\n");
+    }
+}
+
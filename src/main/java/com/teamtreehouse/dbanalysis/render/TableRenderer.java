@@ -0,0 +1,88 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/*
+ writes the country table to one buffered writer. each row is built in
+ a single reused StringBuilder and handed to the writer in one call.
+ call finish() at the end to close off the output and flush it.
+ */
+public abstract class TableRenderer {
+    private final Writer out;
+    protected final StringBuilder line = new StringBuilder(128);
+    private long rows;
+
+    protected TableRenderer(Writer out) {
+        this.out = out;
+    }
+
+    /*
+     takes a format name: text, csv, json or jsonl
+     returns the renderer for it
+     */
+    public static TableRenderer forFormat(String format, Writer out) {
+        switch (format.trim().toLowerCase()) {
+            case "text":
+                return new TextTableRenderer(out);
+            case "csv":
+                return new CsvTableRenderer(out);
+            case "json":
+                return new JsonTableRenderer(out);
+            case "jsonl":
+                return new JsonLinesTableRenderer(out);
+            default:
+                throw new IllegalArgumentException("Unknown table format: " + format);
+        }
+    }
+
+    public void header() {
+        line.setLength(0);
+        appendHeader(line);
+        write();
+    }
+
+    public void row(String code, String name,
+                    double internetUsers, boolean hasInternetUsers,
+                    double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        line.setLength(0);
+        appendRow(line, rows++, code, name,
+                internetUsers, hasInternetUsers,
+                adultLiteracyRate, hasAdultLiteracyRate);
+        write();
+    }
+
+    public void finish() {
+        line.setLength(0);
+        appendFooter(line, rows);
+        write();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    protected abstract void appendHeader(StringBuilder sb);
+
+    protected abstract void appendRow(StringBuilder sb, long index, String code, String name,
+                                      double internetUsers, boolean hasInternetUsers,
+                                      double adultLiteracyRate, boolean hasAdultLiteracyRate);
+
+    protected void appendFooter(StringBuilder sb, long rowCount) {
+    }
+
+    private void write() {
+        if (line.length() == 0) return;
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
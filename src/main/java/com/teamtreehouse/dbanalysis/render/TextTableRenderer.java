@@ -0,0 +1,41 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.Writer;
+
+/*
+ the aligned table shown by the display menu
+ */
+public class TextTableRenderer extends TableRenderer {
+    private static final int NAME_WIDTH = 30;
+    private static final int VALUE_WIDTH = 20;
+    private static final int RULE_WIDTH = 80;
+    private static final String NEWLINE = System.lineSeparator();
+
+    public TextTableRenderer(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder sb) {
+        sb.append("Country");
+        Decimals.padTo(sb, 0, NAME_WIDTH).append("Internet Users");
+        Decimals.padTo(sb, NAME_WIDTH, VALUE_WIDTH).append("Literacy");
+        Decimals.padTo(sb, NAME_WIDTH + VALUE_WIDTH, VALUE_WIDTH).append(NEWLINE);
+        for (int i = 0; i < RULE_WIDTH; i++) sb.append('-');
+        sb.append(NEWLINE);
+    }
+
+    @Override
+    protected void appendRow(StringBuilder sb, long index, String code, String name,
+                             double internetUsers, boolean hasInternetUsers,
+                             double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        sb.append(name);
+        Decimals.padTo(sb, 0, NAME_WIDTH);
+        int start = sb.length();
+        Decimals.appendFixed2(sb, internetUsers, hasInternetUsers);
+        Decimals.padTo(sb, start, VALUE_WIDTH);
+        start = sb.length();
+        Decimals.appendFixed2(sb, adultLiteracyRate, hasAdultLiteracyRate);
+        Decimals.padTo(sb, start, VALUE_WIDTH).append(NEWLINE);
+    }
+}
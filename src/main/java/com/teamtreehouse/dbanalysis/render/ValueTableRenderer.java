@@ -0,0 +1,119 @@
+package com.teamtreehouse.dbanalysis.render;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/*
+ writes indicator observations, one row per country and year, to one
+ buffered writer the same way TableRenderer writes countries: each row
+ is built in a single reused StringBuilder and handed over in one call.
+ call finish() at the end to flush the output.
+ */
+public abstract class ValueTableRenderer {
+    private final Writer out;
+    protected final StringBuilder line = new StringBuilder(96);
+    private long rows;
+
+    protected ValueTableRenderer(Writer out) {
+        this.out = out;
+    }
+
+    /*
+     takes a format name: csv or jsonl
+     returns the renderer for it
+     */
+    public static ValueTableRenderer forFormat(String format, Writer out) {
+        switch (format.trim().toLowerCase()) {
+            case "csv":
+                return new Csv(out);
+            case "jsonl":
+                return new JsonLines(out);
+            default:
+                throw new IllegalArgumentException("Unknown value format: " + format);
+        }
+    }
+
+    public void header() {
+        line.setLength(0);
+        appendHeader(line);
+        write();
+    }
+
+    public void row(String indicator, String country, int year, double value) {
+        line.setLength(0);
+        appendRow(line, indicator, country, year, value);
+        rows++;
+        write();
+    }
+
+    public void finish() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    protected abstract void appendHeader(StringBuilder sb);
+
+    protected abstract void appendRow(StringBuilder sb, String indicator, String country, int year, double value);
+
+    private void write() {
+        if (line.length() == 0) return;
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     indicator,country,year,value with a header line
+     */
+    private static class Csv extends ValueTableRenderer {
+        private Csv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        protected void appendHeader(StringBuilder sb) {
+            sb.append("indicator,country,year,value\n");
+        }
+
+        @Override
+        protected void appendRow(StringBuilder sb, String indicator, String country, int year, double value) {
+            CsvTableRenderer.appendField(sb, indicator).append(',');
+            CsvTableRenderer.appendField(sb, country).append(',');
+            sb.append(year).append(',').append(value).append('\n');
+        }
+    }
+
+    /*
+     one json object per line
+     */
+    private static class JsonLines extends ValueTableRenderer {
+        private JsonLines(Writer out) {
+            super(out);
+        }
+
+        @Override
+        protected void appendHeader(StringBuilder sb) {
+        }
+
+        @Override
+        protected void appendRow(StringBuilder sb, String indicator, String country, int year, double value) {
+            sb.append("{\"indicator\":");
+            Json.appendString(sb, indicator);
+            sb.append(",\"country\":");
+            Json.appendString(sb, country);
+            sb.append(",\"year\":").append(year).append(",\"value\":");
+            Json.appendNumber(sb, value, true);
+            sb.append("}\n");
+        }
+    }
+}
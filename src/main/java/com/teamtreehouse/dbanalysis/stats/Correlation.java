@@ -0,0 +1,107 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+/*
+ a Pearson correlation coefficient built up a pair at a time.
+
+ keeps the means and the sums of squared differences from them
+ (Welford's method) instead of raw sums of squares, so large values
+ with a small spread do not cancel each other out. two accumulators
+ can be combined, so partial results from separate passes merge into
+ one, and a pair can be removed again when the row it came from changes.
+ */
+public class Correlation {
+    private long n;
+    private double meanX;
+    private double meanY;
+    // sums of (x - meanX)^2, (y - meanY)^2 and (x - meanX)(y - meanY)
+    private double m2X;
+    private double m2Y;
+    private double cXY;
+
+    /*
+     rebuilds an accumulator from sums computed elsewhere,
+     such as aggregates returned by the database.
+     */
+    public static Correlation fromSums(long n, double sumX, double sumY,
+                                       double sumXX, double sumYY, double sumXY) {
+        Correlation correlation = new Correlation();
+        if (n <= 0) return correlation;
+        correlation.n = n;
+        correlation.meanX = sumX / n;
+        correlation.meanY = sumY / n;
+        correlation.m2X = Math.max(0, sumXX - sumX * correlation.meanX);
+        correlation.m2Y = Math.max(0, sumYY - sumY * correlation.meanY);
+        correlation.cXY = sumXY - sumX * correlation.meanY;
+        return correlation;
+    }
+
+    public void add(double x, double y) {
+        n++;
+        double dx = x - meanX;
+        double dy = y - meanY;
+        meanX += dx / n;
+        meanY += dy / n;
+        m2X += dx * (x - meanX);
+        m2Y += dy * (y - meanY);
+        cXY += dx * (y - meanY);
+    }
+
+    /*
+     takes back a pair that was added earlier
+     */
+    public void remove(double x, double y) {
+        if (n <= 1) {
+            n = 0;
+            meanX = meanY = m2X = m2Y = cXY = 0;
+            return;
+        }
+        // the means before the pair was added, then add() run backwards
+        double previousMeanX = meanX - (x - meanX) / (n - 1);
+        double previousMeanY = meanY - (y - meanY) / (n - 1);
+        m2X = Math.max(0, m2X - (x - previousMeanX) * (x - meanX));
+        m2Y = Math.max(0, m2Y - (y - previousMeanY) * (y - meanY));
+        cXY -= (x - previousMeanX) * (y - meanY);
+        meanX = previousMeanX;
+        meanY = previousMeanY;
+        n--;
+    }
+
+    public Correlation combine(Correlation other) {
+        if (other.n == 0) return this;
+        if (n == 0) {
+            n = other.n;
+            meanX = other.meanX;
+            meanY = other.meanY;
+            m2X = other.m2X;
+            m2Y = other.m2Y;
+            cXY = other.cXY;
+            return this;
+        }
+        long total = n + other.n;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double weight = (double) n * other.n / total;
+        m2X += other.m2X + dx * dx * weight;
+        m2Y += other.m2Y + dy * dy * weight;
+        cXY += other.cXY + dx * dy * weight;
+        meanX += dx * other.n / total;
+        meanY += dy * other.n / total;
+        n = total;
+        return this;
+    }
+
+    public long getCount() {
+        return n;
+    }
+
+    /*
+     returns the coefficient, or NaN when fewer than two
+     pairs were added or either side has no variance.
+     */
+    public double coefficient() {
+        if (n < 2) return Double.NaN;
+        double dr = Math.sqrt(m2X * m2Y);
+        if (dr == 0) return Double.NaN;
+        return Math.max(-1, Math.min(1, cXY / dr));
+    }
+}
@@ -0,0 +1,173 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ the correlation coefficient of every pair out of any number of
+ indicators over the same span of years.
+
+ every country and year is one observation. the series are lined up
+ into one column of observations per indicator, with NaN where a value
+ was not recorded, and each pair only counts the observations that have
+ both of its values, so one sparse indicator does not thin out the rest.
+
+ the observations are split in halves on a fork/join pool until a piece
+ is small enough, each piece fills a Correlation per pair, and the
+ pieces are combined on the way back up. every pair is done in one pass
+ over a piece while it is in cache, and all cores share the work.
+ */
+public class CorrelationMatrix {
+    // observations per piece, enough that a piece outweighs forking it
+    private static final int PIECE = 4096;
+
+    private final List<String> indicators;
+    private final int firstYear;
+    private final int lastYear;
+    // pair (i, j) with i < j is at i * size + j, the rest is unused
+    private final Correlation[] pairs;
+
+    private CorrelationMatrix(List<String> indicators, int firstYear, int lastYear, Correlation[] pairs) {
+        this.indicators = indicators;
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        this.pairs = pairs;
+    }
+
+    public static CorrelationMatrix of(List<IndicatorSeries> series) {
+        return of(series, ForkJoinPool.commonPool());
+    }
+
+    /*
+     takes series that all cover the same years and the pool to use
+     */
+    public static CorrelationMatrix of(List<IndicatorSeries> series, ForkJoinPool pool) {
+        if (series.isEmpty()) throw new IllegalArgumentException("no indicators");
+        int firstYear = series.get(0).getFirstYear();
+        int lastYear = series.get(0).getLastYear();
+        List<String> indicators = new ArrayList<>(series.size());
+        for (IndicatorSeries s : series) {
+            if (s.getFirstYear() != firstYear || s.getLastYear() != lastYear) {
+                throw new IllegalArgumentException("series cover different years");
+            }
+            indicators.add(s.getIndicator());
+        }
+        double[][] columns = columns(series);
+        Correlation[] pairs = pool.invoke(new Piece(columns, 0, columns[0].length));
+        return new CorrelationMatrix(indicators, firstYear, lastYear, pairs);
+    }
+
+    /*
+     one array per indicator with a slot for every country any of them
+     has, times every year, NaN where the indicator has no value
+     */
+    private static double[][] columns(List<IndicatorSeries> series) {
+        List<String> countries = new ArrayList<>();
+        for (IndicatorSeries s : series) {
+            for (int row = 0; row < s.size(); row++) {
+                countries.add(s.getCountry(row));
+            }
+        }
+        String[] union = countries.stream().distinct().sorted().toArray(String[]::new);
+        int years = series.get(0).getLastYear() - series.get(0).getFirstYear() + 1;
+
+        double[][] columns = new double[series.size()][];
+        for (int i = 0; i < series.size(); i++) {
+            IndicatorSeries s = series.get(i);
+            double[] column = new double[union.length * years];
+            Arrays.fill(column, Double.NaN);
+            for (int row = 0; row < s.size(); row++) {
+                int slot = Arrays.binarySearch(union, s.getCountry(row));
+                System.arraycopy(s.getValues(row), 0, column, slot * years, years);
+            }
+            columns[i] = column;
+        }
+        return columns;
+    }
+
+    public List<String> getIndicators() {
+        return indicators;
+    }
+
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    public int getLastYear() {
+        return lastYear;
+    }
+
+    public int size() {
+        return indicators.size();
+    }
+
+    /*
+     returns the coefficient for two indicators by position, 1 for an
+     indicator with itself, NaN when the pair has too little to go on
+     */
+    public double coefficient(int i, int j) {
+        if (i == j) return 1;
+        return pair(i, j).coefficient();
+    }
+
+    /*
+     returns the number of observations where both indicators have a value
+     */
+    public long getCount(int i, int j) {
+        return pair(i, j).getCount();
+    }
+
+    private Correlation pair(int i, int j) {
+        return i < j ? pairs[i * size() + j] : pairs[j * size() + i];
+    }
+
+    private static class Piece extends RecursiveTask<Correlation[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final int from;
+        private final int to;
+
+        private Piece(double[][] columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Correlation[] compute() {
+            if (to - from > PIECE) {
+                int middle = (from + to) >>> 1;
+                Piece left = new Piece(columns, from, middle);
+                left.fork();
+                Correlation[] right = new Piece(columns, middle, to).compute();
+                Correlation[] pairs = left.join();
+                for (int p = 0; p < pairs.length; p++) {
+                    if (pairs[p] != null) pairs[p].combine(right[p]);
+                }
+                return pairs;
+            }
+
+            int size = columns.length;
+            Correlation[] pairs = new Correlation[size * size];
+            for (int i = 0; i < size; i++) {
+                double[] x = columns[i];
+                for (int j = i + 1; j < size; j++) {
+                    double[] y = columns[j];
+                    Correlation pair = new Correlation();
+                    for (int row = from; row < to; row++) {
+                        // NaN on either side leaves the observation out of this pair only
+                        if (!Double.isNaN(x[row]) && !Double.isNaN(y[row])) pair.add(x[row], y[row]);
+                    }
+                    pairs[i * size + j] = pair;
+                }
+            }
+            return pairs;
+        }
+    }
+}
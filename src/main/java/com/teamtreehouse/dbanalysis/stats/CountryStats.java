@@ -0,0 +1,331 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+/*
+ collects every number shown on the stats screen in a single pass:
+ min and max for both indicators (with and without requiring the
+ other indicator to be recorded), the counts, the correlation and a
+ quantile sketch of each indicator for its percentiles and histogram.
+ accumulators can be combined, so a pass can be split up and merged.
+ */
+public class CountryStats {
+    private long count;
+    private long internetCount;
+    private long literacyCount;
+
+    private Extreme maxInternet;
+    private Extreme minInternet;
+    private Extreme maxInternetBoth;
+    private Extreme minInternetBoth;
+
+    private Extreme maxLiteracy;
+    private Extreme minLiteracy;
+    private Extreme maxLiteracyBoth;
+    private Extreme minLiteracyBoth;
+
+    private final Correlation correlation;
+
+    // every recorded value of each indicator, null when the stats came from somewhere that has none
+    private Distribution internetDistribution;
+    private Distribution literacyDistribution;
+
+    // what accept() adds the values to, null when the stats were built
+    private QuantileSketch internetSketch;
+    private QuantileSketch literacySketch;
+
+    public CountryStats() {
+        this(QuantileSketch.DEFAULT_ERROR);
+    }
+
+    /*
+     takes the rank error allowed in the percentiles, as a share of the count
+     */
+    public CountryStats(double distributionError) {
+        this.correlation = new Correlation();
+        this.internetDistribution = internetSketch = QuantileSketch.forError(distributionError);
+        this.literacyDistribution = literacySketch = QuantileSketch.forError(distributionError);
+    }
+
+    private CountryStats(Builder builder) {
+        this.count = builder.count;
+        this.internetCount = builder.internetCount;
+        this.literacyCount = builder.literacyCount;
+        this.maxInternet = builder.maxInternet;
+        this.minInternet = builder.minInternet;
+        this.maxInternetBoth = builder.maxInternetBoth;
+        this.minInternetBoth = builder.minInternetBoth;
+        this.maxLiteracy = builder.maxLiteracy;
+        this.minLiteracy = builder.minLiteracy;
+        this.maxLiteracyBoth = builder.maxLiteracyBoth;
+        this.minLiteracyBoth = builder.minLiteracyBoth;
+        this.correlation = builder.correlation;
+        this.internetDistribution = builder.internetDistribution;
+        this.literacyDistribution = builder.literacyDistribution;
+    }
+
+    public static CountryStats of(CountrySnapshot snapshot) {
+        return of(snapshot, QuantileSketch.DEFAULT_ERROR);
+    }
+
+    public static CountryStats of(CountrySnapshot snapshot, double distributionError) {
+        CountryStats stats = new CountryStats(distributionError);
+        for (int i = 0; i < snapshot.size(); i++) {
+            // the name is only read for a row that becomes a min or max
+            stats.accept(null, snapshot, i,
+                    snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                    snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
+        }
+        return stats;
+    }
+
+    /*
+     takes a country where 0.00 marks a missing value
+     */
+    public void accept(Country country) {
+        double internet = country.getInternetUsers() == null ? 0.00 : country.getInternetUsers();
+        double literacy = country.getAdultLiteracyRate() == null ? 0.00 : country.getAdultLiteracyRate();
+        accept(country.getName(), internet, internet != 0.00, literacy, literacy != 0.00);
+    }
+
+    public void accept(String name,
+                       double internet, boolean hasInternet,
+                       double literacy, boolean hasLiteracy) {
+        accept(name, null, 0, internet, hasInternet, literacy, hasLiteracy);
+    }
+
+    /*
+     takes either the name or the snapshot row to read it from
+     */
+    private void accept(String name, CountrySnapshot snapshot, int index,
+                        double internet, boolean hasInternet,
+                        double literacy, boolean hasLiteracy) {
+        count++;
+        if (!hasInternet && !hasLiteracy) return;
+
+        // only rows that become a new min or max get an Extreme allocated
+        Extreme row = null;
+        if (hasInternet) {
+            internetCount++;
+            if (internetSketch != null) internetSketch.add(internet);
+            if (maxInternet == null || internet > maxInternet.getInternetUsers()) {
+                maxInternet = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            if (minInternet == null || internet < minInternet.getInternetUsers()) {
+                minInternet = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+        }
+        if (hasLiteracy) {
+            literacyCount++;
+            if (literacySketch != null) literacySketch.add(literacy);
+            if (maxLiteracy == null || literacy > maxLiteracy.getAdultLiteracyRate()) {
+                maxLiteracy = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            if (minLiteracy == null || literacy < minLiteracy.getAdultLiteracyRate()) {
+                minLiteracy = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+        }
+        if (hasInternet && hasLiteracy) {
+            if (maxInternetBoth == null || internet > maxInternetBoth.getInternetUsers()) {
+                maxInternetBoth = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            if (minInternetBoth == null || internet < minInternetBoth.getInternetUsers()) {
+                minInternetBoth = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            if (maxLiteracyBoth == null || literacy > maxLiteracyBoth.getAdultLiteracyRate()) {
+                maxLiteracyBoth = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            if (minLiteracyBoth == null || literacy < minLiteracyBoth.getAdultLiteracyRate()) {
+                minLiteracyBoth = row = row(row, name, snapshot, index, internet, hasInternet, literacy, hasLiteracy);
+            }
+            correlation.add(internet, literacy);
+        }
+    }
+
+    private static Extreme row(Extreme row, String name, CountrySnapshot snapshot, int index,
+                               double internet, boolean hasInternet,
+                               double literacy, boolean hasLiteracy) {
+        if (row != null) return row;
+        return new Extreme(name != null ? name : snapshot.getName(index),
+                internet, hasInternet, literacy, hasLiteracy);
+    }
+
+    /*
+     folds another accumulator into this one.
+     on ties the value already held here wins. the percentiles are
+     only kept when both sides were accumulated with accept().
+     */
+    public CountryStats combine(CountryStats other) {
+        count += other.count;
+        internetCount += other.internetCount;
+        literacyCount += other.literacyCount;
+
+        maxInternet = maxByInternet(maxInternet, other.maxInternet);
+        minInternet = minByInternet(minInternet, other.minInternet);
+        maxInternetBoth = maxByInternet(maxInternetBoth, other.maxInternetBoth);
+        minInternetBoth = minByInternet(minInternetBoth, other.minInternetBoth);
+
+        maxLiteracy = maxByLiteracy(maxLiteracy, other.maxLiteracy);
+        minLiteracy = minByLiteracy(minLiteracy, other.minLiteracy);
+        maxLiteracyBoth = maxByLiteracy(maxLiteracyBoth, other.maxLiteracyBoth);
+        minLiteracyBoth = minByLiteracy(minLiteracyBoth, other.minLiteracyBoth);
+
+        correlation.combine(other.correlation);
+        internetDistribution = internetSketch = merge(internetSketch, other.internetSketch);
+        literacyDistribution = literacySketch = merge(literacySketch, other.literacySketch);
+        return this;
+    }
+
+    private static QuantileSketch merge(QuantileSketch current, QuantileSketch other) {
+        if (current == null || other == null) return null;
+        return current.merge(other);
+    }
+
+    private static Extreme maxByInternet(Extreme current, Extreme candidate) {
+        if (candidate == null) return current;
+        if (current == null || candidate.getInternetUsers() > current.getInternetUsers()) return candidate;
+        return current;
+    }
+
+    private static Extreme minByInternet(Extreme current, Extreme candidate) {
+        if (candidate == null) return current;
+        if (current == null || candidate.getInternetUsers() < current.getInternetUsers()) return candidate;
+        return current;
+    }
+
+    private static Extreme maxByLiteracy(Extreme current, Extreme candidate) {
+        if (candidate == null) return current;
+        if (current == null || candidate.getAdultLiteracyRate() > current.getAdultLiteracyRate()) return candidate;
+        return current;
+    }
+
+    private static Extreme minByLiteracy(Extreme current, Extreme candidate) {
+        if (candidate == null) return current;
+        if (current == null || candidate.getAdultLiteracyRate() < current.getAdultLiteracyRate()) return candidate;
+        return current;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getInternetCount() {
+        return internetCount;
+    }
+
+    public long getLiteracyCount() {
+        return literacyCount;
+    }
+
+    public long getBothCount() {
+        return correlation.getCount();
+    }
+
+    public Extreme getMaxInternet() {
+        return maxInternet;
+    }
+
+    public Extreme getMinInternet() {
+        return minInternet;
+    }
+
+    public Extreme getMaxInternetBoth() {
+        return maxInternetBoth;
+    }
+
+    public Extreme getMinInternetBoth() {
+        return minInternetBoth;
+    }
+
+    public Extreme getMaxLiteracy() {
+        return maxLiteracy;
+    }
+
+    public Extreme getMinLiteracy() {
+        return minLiteracy;
+    }
+
+    public Extreme getMaxLiteracyBoth() {
+        return maxLiteracyBoth;
+    }
+
+    public Extreme getMinLiteracyBoth() {
+        return minLiteracyBoth;
+    }
+
+    public Correlation getCorrelation() {
+        return correlation;
+    }
+
+    /*
+     returns the distribution of every recorded internet users value,
+     null when these stats were computed without one
+     */
+    public Distribution getInternetDistribution() {
+        return internetDistribution;
+    }
+
+    public Distribution getLiteracyDistribution() {
+        return literacyDistribution;
+    }
+
+    /*
+     assembles stats that were computed somewhere other than accept(),
+     such as aggregates pushed down to the database.
+     */
+    public static class Builder {
+        private long count;
+        private long internetCount;
+        private long literacyCount;
+        private Extreme maxInternet;
+        private Extreme minInternet;
+        private Extreme maxInternetBoth;
+        private Extreme minInternetBoth;
+        private Extreme maxLiteracy;
+        private Extreme minLiteracy;
+        private Extreme maxLiteracyBoth;
+        private Extreme minLiteracyBoth;
+        private Correlation correlation = new Correlation();
+        private Distribution internetDistribution;
+        private Distribution literacyDistribution;
+
+        public Builder withCounts(long count, long internetCount, long literacyCount) {
+            this.count = count;
+            this.internetCount = internetCount;
+            this.literacyCount = literacyCount;
+            return this;
+        }
+
+        public Builder withInternetExtremes(Extreme min, Extreme max, Extreme minBoth, Extreme maxBoth) {
+            this.minInternet = min;
+            this.maxInternet = max;
+            this.minInternetBoth = minBoth;
+            this.maxInternetBoth = maxBoth;
+            return this;
+        }
+
+        public Builder withLiteracyExtremes(Extreme min, Extreme max, Extreme minBoth, Extreme maxBoth) {
+            this.minLiteracy = min;
+            this.maxLiteracy = max;
+            this.minLiteracyBoth = minBoth;
+            this.maxLiteracyBoth = maxBoth;
+            return this;
+        }
+
+        public Builder withCorrelation(Correlation correlation) {
+            this.correlation = correlation;
+            return this;
+        }
+
+        public Builder withDistributions(Distribution internet, Distribution literacy) {
+            this.internetDistribution = internet;
+            this.literacyDistribution = literacy;
+            return this;
+        }
+
+        public CountryStats build() {
+            return new CountryStats(this);
+        }
+    }
+}
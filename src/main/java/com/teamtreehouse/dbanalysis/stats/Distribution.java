@@ -0,0 +1,37 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+/*
+ the percentiles and histogram of one indicator, however they were
+ worked out. a QuantileSketch estimates them in one pass; RunningStats
+ answers them exactly from its ordered rows.
+ */
+public interface Distribution {
+    long getCount();
+
+    /*
+     returns the smallest value, NaN when there are none
+     */
+    double getMin();
+
+    double getMax();
+
+    /*
+     returns how far a rank may be off, as a share of the count, 0 when exact
+     */
+    double getRankError();
+
+    /*
+     takes any number of quantiles from 0 to 1
+     returns the value at or below which each share of the values fall,
+     NaN when there are none. 0 is the min and 1 the max.
+     */
+    double[] getQuantiles(double... quantiles);
+
+    /*
+     takes the range to cover and the number of equal bins
+     returns the number of values in each bin. a bin holds its lower
+     edge, the last one its upper edge too, and values outside the
+     range are not counted.
+     */
+    long[] histogram(double low, double high, int bins);
+}
@@ -0,0 +1,43 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+/*
+ the country that holds a min or max value,
+ along with both of its indicator values.
+ */
+public class Extreme {
+    private final String name;
+    private final double internetUsers;
+    private final boolean hasInternetUsers;
+    private final double adultLiteracyRate;
+    private final boolean hasAdultLiteracyRate;
+
+    public Extreme(String name,
+                   double internetUsers, boolean hasInternetUsers,
+                   double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        this.name = name;
+        this.internetUsers = internetUsers;
+        this.hasInternetUsers = hasInternetUsers;
+        this.adultLiteracyRate = adultLiteracyRate;
+        this.hasAdultLiteracyRate = hasAdultLiteracyRate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getInternetUsers() {
+        return internetUsers;
+    }
+
+    public boolean hasInternetUsers() {
+        return hasInternetUsers;
+    }
+
+    public double getAdultLiteracyRate() {
+        return adultLiteracyRate;
+    }
+
+    public boolean hasAdultLiteracyRate() {
+        return hasAdultLiteracyRate;
+    }
+}
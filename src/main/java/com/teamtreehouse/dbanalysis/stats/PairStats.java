@@ -0,0 +1,236 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import com.teamtreehouse.dbanalysis.model.IndicatorSeries;
+
+/*
+ the stats screen for any two indicators over a span of years.
+ every country and year is one observation; min and max are kept for
+ each indicator on its own and where both were recorded, along with
+ the counts and the correlation over the observations that have both,
+ and a quantile sketch of each indicator for its percentiles and
+ histogram. accumulators can be combined like CountryStats.
+ */
+public class PairStats {
+    private long count;
+    private long xCount;
+    private long yCount;
+
+    private Observation minX;
+    private Observation maxX;
+    private Observation minXBoth;
+    private Observation maxXBoth;
+    private Observation minY;
+    private Observation maxY;
+    private Observation minYBoth;
+    private Observation maxYBoth;
+
+    private final Correlation correlation = new Correlation();
+    private final QuantileSketch xDistribution;
+    private final QuantileSketch yDistribution;
+
+    public PairStats() {
+        this(QuantileSketch.DEFAULT_ERROR);
+    }
+
+    /*
+     takes the rank error allowed in the percentiles, as a share of the count
+     */
+    public PairStats(double distributionError) {
+        this.xDistribution = QuantileSketch.forError(distributionError);
+        this.yDistribution = QuantileSketch.forError(distributionError);
+    }
+
+    public static PairStats of(IndicatorSeries x, IndicatorSeries y) {
+        return of(x, y, QuantileSketch.DEFAULT_ERROR);
+    }
+
+    /*
+     lines the two series up by country and year and takes every
+     observation in the years they share
+     */
+    public static PairStats of(IndicatorSeries x, IndicatorSeries y, double distributionError) {
+        PairStats stats = new PairStats(distributionError);
+        int firstYear = Math.max(x.getFirstYear(), y.getFirstYear());
+        int lastYear = Math.min(x.getLastYear(), y.getLastYear());
+        if (firstYear > lastYear) return stats;
+
+        int i = 0;
+        int j = 0;
+        while (i < x.size() || j < y.size()) {
+            int order = i == x.size() ? 1
+                    : j == y.size() ? -1
+                    : x.getCountry(i).compareTo(y.getCountry(j));
+            String country = order <= 0 ? x.getCountry(i) : y.getCountry(j);
+            double[] xs = order <= 0 ? x.getValues(i++) : null;
+            double[] ys = order >= 0 ? y.getValues(j++) : null;
+            for (int year = firstYear; year <= lastYear; year++) {
+                double xv = xs == null ? Double.NaN : xs[year - x.getFirstYear()];
+                double yv = ys == null ? Double.NaN : ys[year - y.getFirstYear()];
+                stats.accept(country, year, xv, !Double.isNaN(xv), yv, !Double.isNaN(yv));
+            }
+        }
+        return stats;
+    }
+
+    public void accept(String country, int year, double x, boolean hasX, double y, boolean hasY) {
+        count++;
+        if (!hasX && !hasY) return;
+
+        Observation row = null;
+        if (hasX) {
+            xCount++;
+            xDistribution.add(x);
+            if (minX == null || x < minX.x) minX = row = row(row, country, year, x, hasX, y, hasY);
+            if (maxX == null || x > maxX.x) maxX = row = row(row, country, year, x, hasX, y, hasY);
+        }
+        if (hasY) {
+            yCount++;
+            yDistribution.add(y);
+            if (minY == null || y < minY.y) minY = row = row(row, country, year, x, hasX, y, hasY);
+            if (maxY == null || y > maxY.y) maxY = row = row(row, country, year, x, hasX, y, hasY);
+        }
+        if (hasX && hasY) {
+            if (minXBoth == null || x < minXBoth.x) minXBoth = row = row(row, country, year, x, hasX, y, hasY);
+            if (maxXBoth == null || x > maxXBoth.x) maxXBoth = row = row(row, country, year, x, hasX, y, hasY);
+            if (minYBoth == null || y < minYBoth.y) minYBoth = row = row(row, country, year, x, hasX, y, hasY);
+            if (maxYBoth == null || y > maxYBoth.y) maxYBoth = row = row(row, country, year, x, hasX, y, hasY);
+            correlation.add(x, y);
+        }
+    }
+
+    private static Observation row(Observation row, String country, int year,
+                                   double x, boolean hasX, double y, boolean hasY) {
+        return row != null ? row : new Observation(country, year, x, hasX, y, hasY);
+    }
+
+    public PairStats combine(PairStats other) {
+        count += other.count;
+        xCount += other.xCount;
+        yCount += other.yCount;
+        minX = pick(minX, other.minX, true, true);
+        maxX = pick(maxX, other.maxX, true, false);
+        minXBoth = pick(minXBoth, other.minXBoth, true, true);
+        maxXBoth = pick(maxXBoth, other.maxXBoth, true, false);
+        minY = pick(minY, other.minY, false, true);
+        maxY = pick(maxY, other.maxY, false, false);
+        minYBoth = pick(minYBoth, other.minYBoth, false, true);
+        maxYBoth = pick(maxYBoth, other.maxYBoth, false, false);
+        correlation.combine(other.correlation);
+        xDistribution.merge(other.xDistribution);
+        yDistribution.merge(other.yDistribution);
+        return this;
+    }
+
+    private static Observation pick(Observation current, Observation candidate, boolean byX, boolean lowest) {
+        if (candidate == null) return current;
+        if (current == null) return candidate;
+        double a = byX ? current.x : current.y;
+        double b = byX ? candidate.x : candidate.y;
+        return (lowest ? b < a : b > a) ? candidate : current;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getXCount() {
+        return xCount;
+    }
+
+    public long getYCount() {
+        return yCount;
+    }
+
+    public long getBothCount() {
+        return correlation.getCount();
+    }
+
+    public Observation getMinX() {
+        return minX;
+    }
+
+    public Observation getMaxX() {
+        return maxX;
+    }
+
+    public Observation getMinXBoth() {
+        return minXBoth;
+    }
+
+    public Observation getMaxXBoth() {
+        return maxXBoth;
+    }
+
+    public Observation getMinY() {
+        return minY;
+    }
+
+    public Observation getMaxY() {
+        return maxY;
+    }
+
+    public Observation getMinYBoth() {
+        return minYBoth;
+    }
+
+    public Observation getMaxYBoth() {
+        return maxYBoth;
+    }
+
+    public Correlation getCorrelation() {
+        return correlation;
+    }
+
+    public QuantileSketch getXDistribution() {
+        return xDistribution;
+    }
+
+    public QuantileSketch getYDistribution() {
+        return yDistribution;
+    }
+
+    /*
+     the country and year that hold a min or max, with both values
+     */
+    public static class Observation {
+        private final String country;
+        private final int year;
+        private final double x;
+        private final boolean hasX;
+        private final double y;
+        private final boolean hasY;
+
+        public Observation(String country, int year, double x, boolean hasX, double y, boolean hasY) {
+            this.country = country;
+            this.year = year;
+            this.x = x;
+            this.hasX = hasX;
+            this.y = y;
+            this.hasY = hasY;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public boolean hasX() {
+            return hasX;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public boolean hasY() {
+            return hasY;
+        }
+    }
+}
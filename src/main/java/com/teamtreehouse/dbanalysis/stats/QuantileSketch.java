@@ -0,0 +1,287 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import java.util.Arrays;
+
+/*
+ a KLL quantile sketch: median, percentiles and histograms of a stream
+ of values in one pass and bounded memory.
+
+ values go into a buffer at level 0. a full level is sorted and every
+ other value, starting at a random one of the first two, moves up a
+ level where it stands for twice as many values; the rest are dropped.
+ higher levels get more room than lower ones, so only about 3k values
+ are ever kept however long the stream is. until the first compaction
+ every value is kept and the answers are exact.
+
+ with k values in the top level a rank is off by about 2.3 / k^0.97 of
+ the count (1% at k = 269, the default), with 99% confidence. two
+ sketches merge into one with the same guarantee, so a pass can be
+ split up like the rest of the stats. the random choices come from a
+ fixed seed, so the same values in the same order give the same answers.
+ */
+public class QuantileSketch implements Distribution {
+    public static final double DEFAULT_ERROR = 0.01;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities;
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long random = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch() {
+        this(kForError(DEFAULT_ERROR));
+    }
+
+    /*
+     takes the number of values kept at the top level, at least 8
+     */
+    public QuantileSketch(int k) {
+        if (k < 8) throw new IllegalArgumentException("k must be at least 8");
+        this.k = k;
+        capacities = new int[]{k};
+        levels[0] = new double[k];
+        maxRetained = k;
+    }
+
+    /*
+     takes the rank error wanted, as a share of the count
+     returns a sketch sized for it
+     */
+    public static QuantileSketch forError(double error) {
+        return new QuantileSketch(kForError(error));
+    }
+
+    private static int kForError(double error) {
+        if (!(error > 0 && error < 1)) throw new IllegalArgumentException("error must be between 0 and 1");
+        return Math.max(8, (int) Math.ceil(Math.pow(2.296 / error, 1 / 0.9723)));
+    }
+
+    /*
+     returns the rank error this sketch gives, as a share of the count
+     */
+    @Override
+    public double getRankError() {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (count == 0 || value < min) min = value;
+        if (count == 0 || value > max) max = value;
+        count++;
+        append(0, value);
+        retained++;
+        if (retained >= maxRetained) compress();
+    }
+
+    /*
+     folds another sketch into this one, the other is left as it was
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.count == 0) return this;
+        if (count == 0 || other.min < min) min = other.min;
+        if (count == 0 || other.max > max) max = other.max;
+        count += other.count;
+        while (levels.length < other.levels.length) grow();
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+            retained += other.sizes[h];
+        }
+        while (retained >= maxRetained) compress();
+        return this;
+    }
+
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, sizes[level] * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /*
+     halves the lowest level that is over its capacity
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacities[h]) continue;
+            if (h + 1 == levels.length) grow();
+            double[] level = levels[h];
+            // an odd value out stays behind, the rest pair up
+            int size = sizes[h];
+            int start = size % 2;
+            Arrays.sort(level, start, size);
+            int offset = nextBit();
+            for (int i = start + offset; i < size; i += 2) {
+                append(h + 1, level[i]);
+            }
+            sizes[h] = start;
+            retained -= (size - start) / 2;
+            if (retained < maxRetained) return;
+        }
+    }
+
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        levels[height - 1] = new double[MIN_CAPACITY];
+        // the top level holds k, each one below two thirds of the one above
+        capacities = new int[height];
+        maxRetained = 0;
+        for (int h = 0; h < height; h++) {
+            capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, height - 1 - h)));
+            maxRetained += capacities[h];
+        }
+    }
+
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /*
+     returns the smallest value added, NaN when the sketch is empty
+     */
+    @Override
+    public double getMin() {
+        return min;
+    }
+
+    @Override
+    public double getMax() {
+        return max;
+    }
+
+    /*
+     takes a quantile from 0 to 1
+     returns the value at or below which that share of the values fall,
+     NaN when the sketch is empty. 0 is the min and 1 the max.
+     */
+    public double getQuantile(double quantile) {
+        return getQuantiles(quantile)[0];
+    }
+
+    /*
+     takes any number of quantiles, so the sketch is only sorted once
+     */
+    @Override
+    public double[] getQuantiles(double... quantiles) {
+        double[] values = new double[quantiles.length];
+        if (count == 0) {
+            Arrays.fill(values, Double.NaN);
+            return values;
+        }
+        Weighted sorted = sorted();
+        for (int q = 0; q < quantiles.length; q++) {
+            if (quantiles[q] <= 0 || quantiles[q] >= 1) {
+                values[q] = quantiles[q] <= 0 ? min : max;
+                continue;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantiles[q] * count));
+            long seen = 0;
+            values[q] = max;
+            for (int i = 0; i < sorted.size; i++) {
+                seen += sorted.weights[i];
+                if (seen >= rank) {
+                    values[q] = sorted.values[i];
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /*
+     takes the range to cover and the number of equal bins
+     returns the estimated number of values in each bin. a bin holds
+     its lower edge, the last one its upper edge too, and values
+     outside the range are not counted.
+     */
+    @Override
+    public long[] histogram(double low, double high, int bins) {
+        if (bins < 1 || !(high >= low)) throw new IllegalArgumentException("bad histogram range");
+        long[] counts = new long[bins];
+        double width = (high - low) / bins;
+        for (int h = 0; h < levels.length; h++) {
+            long weight = 1L << h;
+            for (int i = 0; i < sizes[h]; i++) {
+                double value = levels[h][i];
+                if (value < low || value > high) continue;
+                int bin = width == 0 ? 0 : (int) ((value - low) / width);
+                counts[Math.min(bin, bins - 1)] += weight;
+            }
+        }
+        return counts;
+    }
+
+    /*
+     every value kept, in order, with the number of values it stands for.
+     each level is sorted on its own and merged into the levels below it.
+     */
+    private Weighted sorted() {
+        Weighted sorted = new Weighted(retained);
+        for (int h = 0; h < levels.length; h++) {
+            double[] level = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(level);
+            sorted.merge(level, 1L << h);
+        }
+        return sorted;
+    }
+
+    private static class Weighted {
+        private double[] values;
+        private long[] weights;
+        private double[] spareValues;
+        private long[] spareWeights;
+        private int size;
+
+        private Weighted(int capacity) {
+            values = new double[capacity];
+            weights = new long[capacity];
+            spareValues = new double[capacity];
+            spareWeights = new long[capacity];
+        }
+
+        private void merge(double[] level, long weight) {
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size || j < level.length) {
+                if (j == level.length || (i < size && values[i] <= level[j])) {
+                    spareValues[n] = values[i];
+                    spareWeights[n++] = weights[i++];
+                } else {
+                    spareValues[n] = level[j++];
+                    spareWeights[n++] = weight;
+                }
+            }
+            double[] v = values;
+            long[] w = weights;
+            values = spareValues;
+            weights = spareWeights;
+            spareValues = v;
+            spareWeights = w;
+            size = n;
+        }
+    }
+}
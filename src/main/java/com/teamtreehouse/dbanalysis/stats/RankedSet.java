@@ -0,0 +1,166 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ a sorted set that can also find the i-th element and count the
+ elements below a value, each in O(log n).
+
+ a treap: a search tree by the comparator and a heap by a random
+ priority per node, which keeps it balanced on average. every node
+ knows the size of its subtree. nodes are never changed, with() and
+ without() copy only the path they walk and share the rest, so each
+ version of the set stays valid and can be read from any thread while
+ newer ones are made.
+ */
+final class RankedSet<T> {
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    RankedSet(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    private RankedSet(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /*
+     returns this set with the element added, or replacing an equal one
+     */
+    RankedSet<T> with(T element) {
+        Split<T> below = split(root, element, false);
+        Split<T> above = split(below.rest, element, true);
+        Node<T> node = new Node<>(element, ThreadLocalRandom.current().nextInt(), null, null);
+        return new RankedSet<>(comparator, join(join(below.taken, node), above.rest));
+    }
+
+    /*
+     returns this set without the element, or this set when it has none equal
+     */
+    RankedSet<T> without(T element) {
+        Split<T> below = split(root, element, false);
+        Split<T> above = split(below.rest, element, true);
+        if (above.taken == null) return this;
+        return new RankedSet<>(comparator, join(below.taken, above.rest));
+    }
+
+    /*
+     takes a position from 0 to size() - 1 in sorted order
+     */
+    T get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(String.valueOf(index));
+        Node<T> node = root;
+        while (true) {
+            int left = size(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index == left) {
+                return node.element;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    T first() {
+        if (root == null) throw new NoSuchElementException();
+        return get(0);
+    }
+
+    T last() {
+        if (root == null) throw new NoSuchElementException();
+        return get(size() - 1);
+    }
+
+    /*
+     returns how many elements sort before the probe, which need not be in the set
+     */
+    int countBelow(T probe) {
+        int count = 0;
+        Node<T> node = root;
+        while (node != null) {
+            if (comparator.compare(node.element, probe) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /*
+     returns the elements before the key and the rest, or with inclusive
+     the elements up to and including it and the rest
+     */
+    private Split<T> split(Node<T> node, T key, boolean inclusive) {
+        if (node == null) return new Split<>(null, null);
+        int c = comparator.compare(node.element, key);
+        if (c < 0 || (inclusive && c == 0)) {
+            Split<T> right = split(node.right, key, inclusive);
+            return new Split<>(node.withChildren(node.left, right.taken), right.rest);
+        }
+        Split<T> left = split(node.left, key, inclusive);
+        return new Split<>(left.taken, node.withChildren(left.rest, node.right));
+    }
+
+    /*
+     takes two trees where every element of the first sorts before the second
+     */
+    private static <T> Node<T> join(Node<T> first, Node<T> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        if (first.priority > second.priority) {
+            return first.withChildren(first.left, join(first.right, second));
+        }
+        return second.withChildren(join(first, second.left), second.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Split<T> {
+        private final Node<T> taken;
+        private final Node<T> rest;
+
+        private Split(Node<T> taken, Node<T> rest) {
+            this.taken = taken;
+            this.rest = rest;
+        }
+    }
+
+    private static final class Node<T> {
+        private final T element;
+        private final int priority;
+        private final int size;
+        private final Node<T> left;
+        private final Node<T> right;
+
+        private Node(T element, int priority, Node<T> left, Node<T> right) {
+            this.element = element;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+        }
+
+        private Node<T> withChildren(Node<T> left, Node<T> right) {
+            if (left == this.left && right == this.right) return this;
+            return new Node<>(element, priority, left, right);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import com.teamtreehouse.dbanalysis.model.CountryIndicator;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+import java.util.Arrays;
+
+/*
+ the same answers as RankQuery for a snapshot, which has no index:
+ one pass that keeps the best k rows seen so far in a bounded heap,
+ O(n log k) time and O(k) memory, and a filter for ranges.
+ rows are ordered by value with ties broken by code, like the indexes.
+ */
+public class Ranking {
+
+    /*
+     takes the indicator, how many countries and whether to start from the highest
+     returns them best first
+     */
+    public static CountrySnapshot top(CountrySnapshot snapshot, CountryIndicator indicator, int k, boolean highest) {
+        if (k <= 0) return new CountrySnapshot.Builder(0).build();
+        // heap[0] is the worst row kept, the first to go when a better one turns up
+        int[] heap = new int[Math.min(k, snapshot.size())];
+        int size = 0;
+        for (int row = 0; row < snapshot.size(); row++) {
+            if (!indicator.isRecorded(snapshot, row)) continue;
+            if (size < heap.length) {
+                heap[size] = row;
+                siftUp(snapshot, indicator, highest, heap, size++);
+            } else if (before(snapshot, indicator, highest, row, heap[0])) {
+                heap[0] = row;
+                siftDown(snapshot, indicator, highest, heap, size);
+            }
+        }
+        int[] best = new int[size];
+        // taking the worst off the top each time fills the result from the end
+        for (int i = size - 1; i >= 0; i--) {
+            best[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(snapshot, indicator, highest, heap, i);
+        }
+        return rows(snapshot, best);
+    }
+
+    /*
+     takes the indicator and an inclusive range of values
+     returns every country with a recorded value in it, lowest first
+     */
+    public static CountrySnapshot range(CountrySnapshot snapshot, CountryIndicator indicator,
+                                        double low, double high) {
+        int[] matches = new int[16];
+        int size = 0;
+        for (int row = 0; row < snapshot.size(); row++) {
+            if (!indicator.isRecorded(snapshot, row)) continue;
+            double value = indicator.value(snapshot, row);
+            if (value < low || value > high) continue;
+            if (size == matches.length) matches = Arrays.copyOf(matches, size * 2);
+            matches[size++] = row;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = matches[i];
+        Arrays.sort(order, (a, b) -> before(snapshot, indicator, false, a, b) ? -1
+                : before(snapshot, indicator, false, b, a) ? 1 : 0);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) sorted[i] = order[i];
+        return rows(snapshot, sorted);
+    }
+
+    /*
+     returns true when row a comes before row b
+     */
+    private static boolean before(CountrySnapshot snapshot, CountryIndicator indicator, boolean highest,
+                                  int a, int b) {
+        double x = indicator.value(snapshot, a);
+        double y = indicator.value(snapshot, b);
+        if (x != y) return highest ? x > y : x < y;
+        // only reached on a tie, so codes are rarely decoded
+        return snapshot.getCode(a).compareTo(snapshot.getCode(b)) < 0;
+    }
+
+    private static void siftUp(CountrySnapshot snapshot, CountryIndicator indicator, boolean highest,
+                               int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(snapshot, indicator, highest, heap[parent], heap[i])) return;
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(CountrySnapshot snapshot, CountryIndicator indicator, boolean highest,
+                                 int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && before(snapshot, indicator, highest, heap[worst], heap[left])) worst = left;
+            if (right < size && before(snapshot, indicator, highest, heap[worst], heap[right])) worst = right;
+            if (worst == i) return;
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int row = heap[i];
+        heap[i] = heap[j];
+        heap[j] = row;
+    }
+
+    private static CountrySnapshot rows(CountrySnapshot snapshot, int[] rows) {
+        CountrySnapshot.Builder builder = new CountrySnapshot.Builder(rows.length);
+        for (int row : rows) {
+            builder.add(snapshot.getCode(row), snapshot.getName(row),
+                    snapshot.hasInternetUsers(row) ? snapshot.getInternetUsers(row) : null,
+                    snapshot.hasAdultLiteracyRate(row) ? snapshot.getAdultLiteracyRate(row) : null);
+        }
+        return builder.build();
+    }
+}
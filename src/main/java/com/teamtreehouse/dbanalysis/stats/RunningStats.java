@@ -0,0 +1,326 @@
+package com.teamtreehouse.dbanalysis.stats;
+
+import com.teamtreehouse.dbanalysis.model.Country;
+import com.teamtreehouse.dbanalysis.model.CountrySnapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/*
+ the stats screen kept up to date a row at a time instead of recomputed.
+
+ holds the counts, the correlation sums and a sorted set per ordering
+ the screen shows a min and max for. a save, update or delete moves
+ only the changed row in or out, in O(log n), and the next stats()
+ reads the ends of the sets. the result is kept until the next change,
+ so asking again costs nothing however big the table is.
+
+ the rows with each indicator are also kept in a RankedSet, which can
+ find the i-th row, so the percentiles and histograms are read off it
+ exactly in O(log n) each instead of sketched from every row again.
+ each change makes a new version of the set and leaves the old one as
+ it was, so the stats handed out keep answering for the rows they were
+ built from.
+
+ built from a snapshot when the owner first needs it and kept in step
+ through the owner's write hooks. verify() compares it with a full
+ recompute.
+ */
+public class RunningStats {
+    // relative difference allowed between running and recomputed sums
+    private static final double TOLERANCE = 1e-9;
+
+    private static final Comparator<Row> BY_INTERNET =
+            Comparator.comparingDouble((Row row) -> row.internet).thenComparing(row -> row.code);
+    private static final Comparator<Row> BY_LITERACY =
+            Comparator.comparingDouble((Row row) -> row.literacy).thenComparing(row -> row.code);
+
+    private final Map<String, Row> rows = new HashMap<>();
+    private final TreeSet<Row> internetBoth = new TreeSet<>(BY_INTERNET);
+    private final TreeSet<Row> literacyBoth = new TreeSet<>(BY_LITERACY);
+    private final Correlation correlation = new Correlation();
+
+    private RankedSet<Row> internet = new RankedSet<>(BY_INTERNET);
+    private RankedSet<Row> literacy = new RankedSet<>(BY_LITERACY);
+    private CountryStats stats;
+
+    public static RunningStats of(CountrySnapshot snapshot) {
+        RunningStats running = new RunningStats();
+        for (int i = 0; i < snapshot.size(); i++) {
+            running.put(snapshot.getCode(i), snapshot.getName(i),
+                    snapshot.getInternetUsers(i), snapshot.hasInternetUsers(i),
+                    snapshot.getAdultLiteracyRate(i), snapshot.hasAdultLiteracyRate(i));
+        }
+        return running;
+    }
+
+    /*
+     takes a country that was saved or updated, where 0.00 marks a missing value
+     */
+    public void put(Country country) {
+        double internetUsers = country.getInternetUsers() == null ? 0.00 : country.getInternetUsers();
+        double literacyRate = country.getAdultLiteracyRate() == null ? 0.00 : country.getAdultLiteracyRate();
+        put(country.getCode(), country.getName(),
+                internetUsers, internetUsers != 0.00, literacyRate, literacyRate != 0.00);
+    }
+
+    /*
+     adds a row, or replaces the one with the same code
+     */
+    public synchronized void put(String code, String name,
+                                 double internetUsers, boolean hasInternetUsers,
+                                 double adultLiteracyRate, boolean hasAdultLiteracyRate) {
+        Row row = new Row(code, name, internetUsers, hasInternetUsers, adultLiteracyRate, hasAdultLiteracyRate);
+        Row previous = rows.put(row.key, row);
+        if (previous != null) unlink(previous);
+        link(row);
+        stats = null;
+    }
+
+    /*
+     takes the code a country had before an update, which may have changed it
+     */
+    public synchronized void update(String previousCode, Country country) {
+        remove(previousCode);
+        put(country);
+    }
+
+    public synchronized void remove(String code) {
+        Row previous = rows.remove(key(code));
+        if (previous != null) {
+            unlink(previous);
+            stats = null;
+        }
+    }
+
+    private void link(Row row) {
+        if (row.hasInternet) internet = internet.with(row);
+        if (row.hasLiteracy) literacy = literacy.with(row);
+        if (row.hasInternet && row.hasLiteracy) {
+            internetBoth.add(row);
+            literacyBoth.add(row);
+            correlation.add(row.internet, row.literacy);
+        }
+    }
+
+    private void unlink(Row row) {
+        if (row.hasInternet) internet = internet.without(row);
+        if (row.hasLiteracy) literacy = literacy.without(row);
+        if (row.hasInternet && row.hasLiteracy) {
+            internetBoth.remove(row);
+            literacyBoth.remove(row);
+            correlation.remove(row.internet, row.literacy);
+        }
+    }
+
+    /*
+     returns the current stats, the same object until the next change
+     */
+    public synchronized CountryStats stats() {
+        if (stats == null) {
+            stats = new CountryStats.Builder()
+                    .withCounts(rows.size(), internet.size(), literacy.size())
+                    .withInternetExtremes(first(internet), last(internet),
+                            first(internetBoth), last(internetBoth))
+                    .withLiteracyExtremes(first(literacy), last(literacy),
+                            first(literacyBoth), last(literacyBoth))
+                    .withCorrelation(new Correlation().combine(correlation))
+                    .withDistributions(new Ranked(internet, true), new Ranked(literacy, false))
+                    .build();
+        }
+        return stats;
+    }
+
+    private static Extreme first(TreeSet<Row> rows) {
+        return rows.isEmpty() ? null : rows.first().extreme();
+    }
+
+    private static Extreme last(TreeSet<Row> rows) {
+        return rows.isEmpty() ? null : rows.last().extreme();
+    }
+
+    private static Extreme first(RankedSet<Row> rows) {
+        return rows.isEmpty() ? null : rows.first().extreme();
+    }
+
+    private static Extreme last(RankedSet<Row> rows) {
+        return rows.isEmpty() ? null : rows.last().extreme();
+    }
+
+    /*
+     takes stats recomputed from the table
+     returns what does not match the running stats, empty when all is well.
+     extremes are compared by value, a tie may name a different country.
+     */
+    public List<String> verify(CountryStats expected) {
+        CountryStats actual = stats();
+        List<String> differences = new ArrayList<>();
+        count(differences, "count", expected.getCount(), actual.getCount());
+        count(differences, "internet users count", expected.getInternetCount(), actual.getInternetCount());
+        count(differences, "literacy rate count", expected.getLiteracyCount(), actual.getLiteracyCount());
+        count(differences, "count with both", expected.getBothCount(), actual.getBothCount());
+        internet(differences, "highest internet users", expected.getMaxInternet(), actual.getMaxInternet());
+        internet(differences, "lowest internet users", expected.getMinInternet(), actual.getMinInternet());
+        internet(differences, "highest internet users with both",
+                expected.getMaxInternetBoth(), actual.getMaxInternetBoth());
+        internet(differences, "lowest internet users with both",
+                expected.getMinInternetBoth(), actual.getMinInternetBoth());
+        literacy(differences, "highest literacy rate", expected.getMaxLiteracy(), actual.getMaxLiteracy());
+        literacy(differences, "lowest literacy rate", expected.getMinLiteracy(), actual.getMinLiteracy());
+        literacy(differences, "highest literacy rate with both",
+                expected.getMaxLiteracyBoth(), actual.getMaxLiteracyBoth());
+        literacy(differences, "lowest literacy rate with both",
+                expected.getMinLiteracyBoth(), actual.getMinLiteracyBoth());
+        if (expected.getInternetDistribution() != null) {
+            count(differences, "internet users percentile count",
+                    expected.getInternetDistribution().getCount(), actual.getInternetDistribution().getCount());
+        }
+        if (expected.getLiteracyDistribution() != null) {
+            count(differences, "literacy rate percentile count",
+                    expected.getLiteracyDistribution().getCount(), actual.getLiteracyDistribution().getCount());
+        }
+        double r = expected.getCorrelation().coefficient();
+        double s = actual.getCorrelation().coefficient();
+        if (Double.isNaN(r) != Double.isNaN(s) || Math.abs(r - s) > TOLERANCE * Math.max(1, Math.abs(r))) {
+            differences.add(String.format("correlation: expected %s, running %s", r, s));
+        }
+        return differences;
+    }
+
+    private static void count(List<String> differences, String what, long expected, long actual) {
+        if (expected != actual) {
+            differences.add(String.format("%s: expected %d, running %d", what, expected, actual));
+        }
+    }
+
+    private static void internet(List<String> differences, String what, Extreme expected, Extreme actual) {
+        Double e = expected == null ? null : expected.getInternetUsers();
+        Double a = actual == null ? null : actual.getInternetUsers();
+        if (e == null ? a != null : !e.equals(a)) {
+            differences.add(String.format("%s: expected %s, running %s", what, e, a));
+        }
+    }
+
+    private static void literacy(List<String> differences, String what, Extreme expected, Extreme actual) {
+        Double e = expected == null ? null : expected.getAdultLiteracyRate();
+        Double a = actual == null ? null : actual.getAdultLiteracyRate();
+        if (e == null ? a != null : !e.equals(a)) {
+            differences.add(String.format("%s: expected %s, running %s", what, e, a));
+        }
+    }
+
+    private static String key(String code) {
+        return code.trim().toUpperCase();
+    }
+
+    private static class Row {
+        private final String key;
+        private final String code;
+        private final String name;
+        private final double internet;
+        private final boolean hasInternet;
+        private final double literacy;
+        private final boolean hasLiteracy;
+
+        private Row(String code, String name,
+                    double internet, boolean hasInternet,
+                    double literacy, boolean hasLiteracy) {
+            this.key = key(code);
+            this.code = code;
+            this.name = name;
+            this.internet = internet;
+            this.hasInternet = hasInternet;
+            this.literacy = literacy;
+            this.hasLiteracy = hasLiteracy;
+        }
+
+        private Extreme extreme() {
+            return new Extreme(name, internet, hasInternet, literacy, hasLiteracy);
+        }
+    }
+
+    /*
+     the exact distribution of one indicator over one version of its rows
+     */
+    private static class Ranked implements Distribution {
+        private final RankedSet<Row> rows;
+        private final boolean byInternet;
+
+        private Ranked(RankedSet<Row> rows, boolean byInternet) {
+            this.rows = rows;
+            this.byInternet = byInternet;
+        }
+
+        @Override
+        public long getCount() {
+            return rows.size();
+        }
+
+        @Override
+        public double getMin() {
+            return rows.isEmpty() ? Double.NaN : value(rows.first());
+        }
+
+        @Override
+        public double getMax() {
+            return rows.isEmpty() ? Double.NaN : value(rows.last());
+        }
+
+        @Override
+        public double getRankError() {
+            return 0;
+        }
+
+        /*
+         uses the same ranks as QuantileSketch, so the two agree when it is exact
+         */
+        @Override
+        public double[] getQuantiles(double... quantiles) {
+            double[] values = new double[quantiles.length];
+            int count = rows.size();
+            for (int q = 0; q < quantiles.length; q++) {
+                if (count == 0) {
+                    values[q] = Double.NaN;
+                } else if (quantiles[q] <= 0 || quantiles[q] >= 1) {
+                    values[q] = quantiles[q] <= 0 ? getMin() : getMax();
+                } else {
+                    int rank = Math.max(1, (int) Math.ceil(quantiles[q] * count));
+                    values[q] = value(rows.get(rank - 1));
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public long[] histogram(double low, double high, int bins) {
+            if (bins < 1 || !(high >= low)) throw new IllegalArgumentException("bad histogram range");
+            long[] counts = new long[bins];
+            double width = (high - low) / bins;
+            int from = below(low);
+            for (int i = 0; i < bins; i++) {
+                int to = i == bins - 1 || width == 0
+                        ? below(Math.nextUp(high))
+                        : below(low + (i + 1) * width);
+                counts[i] = to - from;
+                if (width == 0) break;
+                from = to;
+            }
+            return counts;
+        }
+
+        // the number of rows whose value is under the given one
+        private int below(double value) {
+            return rows.countBelow(byInternet
+                    ? new Row("", null, value, true, 0.00, false)
+                    : new Row("", null, 0.00, false, value, true));
+        }
+
+        private double value(Row row) {
+            return byInternet ? row.internet : row.literacy;
+        }
+    }
+}